@@ -0,0 +1,77 @@
+package kemora;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** One whole cashier session through bookTickets, with a scripted Scanner and the console thrown away */
+/** covers lookup, showtime choice, seat assignment, the journal fsync and queueing the bill */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Dkemora.bill.dir=target/bench-bills", "-Dkemora.bill.queue=4096"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BookingPathBenchmark {
+    private static final int SEATS = 2000;
+
+    @Param({"1000", "100000"})
+    int rows;
+
+    private Path journalDir;
+    private BookingJournal journal;
+    private String[] scripts;
+
+    @State(Scope.Thread)
+    public static class Session {
+        int next;
+    }
+
+    @Setup
+    public void openJournal() throws IOException {
+        journalDir = Files.createTempDirectory("bench-journal");
+        journal = BookingJournal.open(journalDir, SyntheticSchedule.catalog(rows, SEATS), 100_000);
+        // one script per showtime, so every hall fills up evenly
+        scripts = new String[SyntheticSchedule.movies(rows) * SyntheticSchedule.ROWS_PER_MOVIE];
+        for (int i = 0; i < scripts.length; i++) {
+            scripts[i] = SyntheticSchedule.code(i / SyntheticSchedule.ROWS_PER_MOVIE) + "\n"
+                    + (1 + i % SyntheticSchedule.ROWS_PER_MOVIE) + "\n2\nbench@kemora.lk\n";
+        }
+    }
+
+    /** Fresh halls every iteration, so no showtime sells out halfway through a measurement */
+    @Setup(Level.Iteration)
+    public void emptyHalls() {
+        MovieTicketReservationGroup_KeMora.useCatalog(SyntheticSchedule.catalog(rows, SEATS), journal);
+    }
+
+    @TearDown
+    public void closeJournal() throws IOException {
+        journal.close();
+        try (var files = Files.list(journalDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(journalDir);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void bookTickets1(Session session) {
+        book(session);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void bookTickets8(Session session) {
+        book(session);
+    }
+
+    private void book(Session session) {
+        session.next = session.next + 1 == scripts.length ? 0 : session.next + 1;
+        MovieTicketReservationGroup_KeMora.bookTickets(new Scanner(scripts[session.next]), SyntheticSchedule.nullOut());
+    }
+}
@@ -0,0 +1,93 @@
+package kemora;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** A whole order file through BulkBooking against the same orders booked one cashier session at a time */
+/** orders/s is the number of orders divided by the reported time per file */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Dkemora.bill.dir=target/bench-bills", "-Dkemora.bill.queue=100000"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class BulkBookingBenchmark {
+    private static final int ROWS = 3000;
+
+    @Param({"1000", "10000"})
+    int orders;
+
+    private Path orderFile;
+    private Path resultFile;
+    private Path journalDir;
+    private BookingJournal journal;
+    private BillPipeline bills;
+    private String[] sessions;
+
+    @Setup(Level.Trial)
+    public void writeOrders() throws IOException {
+        orderFile = Files.createTempFile("orders", ".csv");
+        resultFile = Files.createTempFile("orders", ".results.csv");
+        journalDir = Files.createTempDirectory("bench-bulk");
+        ShowtimeCatalog catalog = SyntheticSchedule.catalog(ROWS, 2000);
+        journal = BookingJournal.open(journalDir, catalog, 100_000);
+        bills = new BillPipeline(new BillTemplateRenderer(), 2, 100_000);
+        // a corporate order leans on a few popular showtimes, so lines for the same showtime are common
+        Random random = new Random(11);
+        sessions = new String[orders];
+        try (BufferedWriter out = Files.newBufferedWriter(orderFile, StandardCharsets.UTF_8)) {
+            out.write(BulkBooking.ORDER_HEADER);
+            out.newLine();
+            for (int i = 0; i < orders; i++) {
+                int row = random.nextInt(100);
+                int movie = row / SyntheticSchedule.ROWS_PER_MOVIE;
+                Movie showtime = catalog.all().get(row);
+                int tickets = 1 + random.nextInt(4);
+                out.write(SyntheticSchedule.code(movie) + "," + showtime.date() + "," + showtime.showtime() + "," + tickets + ",staff" + i + "@corp.lk");
+                out.newLine();
+                sessions[i] = SyntheticSchedule.code(movie) + "\n" + (1 + row % SyntheticSchedule.ROWS_PER_MOVIE) + "\n" + tickets + "\nstaff" + i + "@corp.lk\n";
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws Exception {
+        bills.shutdown(1, TimeUnit.MINUTES);
+        journal.close();
+        Files.deleteIfExists(orderFile);
+        Files.deleteIfExists(resultFile);
+        try (var files = Files.list(journalDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(journalDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyHalls() {
+        MovieTicketReservationGroup_KeMora.useCatalog(SyntheticSchedule.catalog(ROWS, 2000), journal);
+    }
+
+    @Benchmark
+    public long bulk() throws IOException {
+        BulkBooking bulk = new BulkBooking(journal, bills, 1000);
+        bulk.process(orderFile, resultFile);
+        return bulk.booked();
+    }
+
+    /** Each order as its own bookTickets session, with its own hold, journal fsync and bill */
+    @Benchmark
+    public int oneAtATime() {
+        PrintStream nullOut = SyntheticSchedule.nullOut();
+        for (String session : sessions) {
+            MovieTicketReservationGroup_KeMora.bookTickets(new Scanner(session), nullOut);
+        }
+        return sessions.length;
+    }
+}
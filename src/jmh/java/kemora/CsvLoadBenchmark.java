@@ -0,0 +1,76 @@
+package kemora;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Startup cost of loadMoviesFromCSV: the old split/trim loop against the streaming parser */
+/** rows/s is reported through the "rows" counter, run with -prof gc to see the allocation per row */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class CsvLoadBenchmark {
+    @Param({"100000", "1000000", "5000000"})
+    int rows;
+
+    private Path csv;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class RowCounter {
+        public long rows;
+    }
+
+    @Setup
+    public void writeFile() throws IOException {
+        csv = SyntheticSchedule.writeCsv(rows, 200);
+    }
+
+    @TearDown
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(csv);
+    }
+
+    /** The loop loadMoviesFromCSV used before the streaming parser, feeding the same store */
+    @Benchmark
+    public ShowtimeStore splitAndTrim(RowCounter counter) throws IOException {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        try (BufferedReader br = new BufferedReader(new FileReader(csv.toFile()))) {
+            String line;
+            br.readLine();
+            while ((line = br.readLine()) != null) {
+                String[] data = line.split(",");
+                // the price is read as a double the way it was, only turned into cents for the store
+                store.row(data[0].trim(), data[1].trim(), data[2].trim(), data[3].trim(),
+                        Integer.parseInt(data[4].trim()), Integer.parseInt(data[5].trim()),
+                        Math.round(Double.parseDouble(data[6].trim()) * 100), data[7].trim(), data[8].trim());
+                counter.rows++;
+            }
+        }
+        return store.build();
+    }
+
+    @Benchmark
+    public ShowtimeStore streamingParser(RowCounter counter) throws IOException {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        ShowtimeCsvParser parser = new ShowtimeCsvParser();
+        parser.parseFile(csv, store);
+        counter.rows += parser.rows();
+        return store.build();
+    }
+
+    /** What loadMoviesFromCSV does before the journal is opened: parse, then index the catalog */
+    @Benchmark
+    public void loadMoviesFromCSV(RowCounter counter, Blackhole blackhole) throws IOException {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        MovieTicketReservationGroup_KeMora.readShowtimes(csv, store, SyntheticSchedule.nullOut());
+        ShowtimeCatalog catalog = ShowtimeCatalog.build(store.build());
+        counter.rows += catalog.size();
+        blackhole.consume(catalog);
+    }
+}
@@ -0,0 +1,42 @@
+package kemora;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Rows per second of the chunked fork-join loader at 1, 2, 4 and 8 threads */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class CsvParallelLoadBenchmark {
+    @Param({"5000000"})
+    int rows;
+
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    private Path csv;
+
+    @Setup
+    public void writeFile() throws IOException {
+        csv = SyntheticSchedule.writeCsv(rows, 200);
+    }
+
+    @TearDown
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public ShowtimeStore parallelParser(CsvLoadBenchmark.RowCounter counter) throws IOException {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        ShowtimeCsvParser parser = new ShowtimeCsvParser();
+        parser.parseFileParallel(csv, threads, store);
+        counter.rows += parser.rows();
+        return store.build();
+    }
+}
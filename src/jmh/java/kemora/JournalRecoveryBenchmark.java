@@ -0,0 +1,76 @@
+package kemora;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/** Time to reopen a journal of 1M or 10M bookings, as raw segments or after compaction into a snapshot */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+public class JournalRecoveryBenchmark {
+    private static final int ROWS = 30_000;
+    // enough seats for 10M one-seat bookings over the rows, every record names its own seat
+    private static final int HALL = 400;
+
+    @Param({"1000000", "10000000"})
+    int bookings;
+
+    @Param({"false", "true"})
+    boolean compacted;
+
+    private Path journalDir;
+
+    @Setup(Level.Trial)
+    public void writeJournal() throws Exception {
+        ShowtimeCatalog catalog = SyntheticSchedule.catalog(ROWS, HALL);
+        List<Movie> movies = catalog.all();
+        journalDir = Files.createTempDirectory("bench-recovery");
+        BookingJournal journal = BookingJournal.open(journalDir, catalog, compacted ? bookings : Long.MAX_VALUE);
+        // keep a window of appends in flight so the writer can group them, like many cashiers would
+        ArrayDeque<CompletableFuture<Long>> inFlight = new ArrayDeque<>();
+        for (int i = 0; i < bookings; i++) {
+            inFlight.add(journal.appendAsync(movies.get(i % ROWS), new int[] {i / ROWS}));
+            if (inFlight.size() == 4096) {
+                inFlight.poll().get();
+            }
+        }
+        for (CompletableFuture<Long> append : inFlight) {
+            append.get();
+        }
+        journal.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        try (var files = Files.list(journalDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(journalDir);
+    }
+
+    /** Recovery replays onto the catalog, so each run starts from a freshly built one */
+    @State(Scope.Thread)
+    public static class FreshCatalog {
+        ShowtimeCatalog catalog;
+
+        @Setup(Level.Invocation)
+        public void build() {
+            catalog = SyntheticSchedule.catalog(ROWS, HALL);
+        }
+    }
+
+    @Benchmark
+    public ShowtimeCatalog recover(FreshCatalog fresh) throws IOException {
+        BookingJournal.open(journalDir, fresh.catalog, Long.MAX_VALUE).close();
+        return fresh.catalog;
+    }
+}
@@ -0,0 +1,55 @@
+package kemora;
+
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** validateMovieCode against the full scan it replaced, for small and large schedules */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LookupBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int rows;
+
+    private ShowtimeCatalog catalog;
+    private String[] codes;
+    private int next;
+
+    @Setup
+    public void loadCatalog() {
+        catalog = SyntheticSchedule.catalog(rows, 200);
+        MovieTicketReservationGroup_KeMora.useCatalog(catalog, null);
+        codes = new String[SyntheticSchedule.movies(rows)];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = SyntheticSchedule.code(i);
+        }
+    }
+
+    private String nextCode() {
+        next = next + 1 == codes.length ? 0 : next + 1;
+        return codes[next];
+    }
+
+    @Benchmark
+    public List<Movie> validateMovieCode() throws InvalidMovieCodeException {
+        return MovieTicketReservationGroup_KeMora.validateMovieCode(nextCode());
+    }
+
+    /** How validateMovieCode looked up showtimes before the catalog index */
+    @Benchmark
+    public List<Movie> linearScan() {
+        String code = nextCode();
+        List<Movie> matchingMovies = new ArrayList<>();
+        for (Movie movie : catalog.all()) {
+            if (movie.code().equalsIgnoreCase(code)) {
+                matchingMovies.add(movie);
+            }
+        }
+        return matchingMovies;
+    }
+}
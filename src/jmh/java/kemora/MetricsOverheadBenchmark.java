@@ -0,0 +1,52 @@
+package kemora;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** The in-memory part of a booking, code lookup, showtime lookup, seat reservation and release, with metrics on and off */
+/** the two methods run in separate forks because -Dkemora.metrics is read once into a constant */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MetricsOverheadBenchmark {
+    private static final int ROWS = 100_000;
+
+    private String[] codes;
+    private int next;
+
+    @Setup
+    public void loadCatalog() {
+        MovieTicketReservationGroup_KeMora.useCatalog(SyntheticSchedule.catalog(ROWS, 2000), null);
+        // only whole movies, so every code has all 30 showtimes
+        codes = new String[ROWS / SyntheticSchedule.ROWS_PER_MOVIE];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = SyntheticSchedule.code(i);
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dkemora.metrics=true")
+    public int[] metricsOn() {
+        return book();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dkemora.metrics=false")
+    public int[] metricsOff() {
+        return book();
+    }
+
+    private int[] book() {
+        next = next + 1 == codes.length * SyntheticSchedule.ROWS_PER_MOVIE ? 0 : next + 1;
+        int showtime = next % SyntheticSchedule.ROWS_PER_MOVIE;
+        List<Movie> showtimes = MovieTicketReservationGroup_KeMora.checkMovieCode(codes[next / SyntheticSchedule.ROWS_PER_MOVIE]).value();
+        Movie movie = MovieTicketReservationGroup_KeMora.checkShowtime(showtimes, SyntheticSchedule.date(showtime),
+                SyntheticSchedule.SHOWTIMES[showtime % SyntheticSchedule.SHOWTIMES.length]).value();
+        int[] seats = ReservationEngine.tryReserve(movie, 2);
+        ReservationEngine.release(movie, seats);
+        return seats;
+    }
+}
@@ -0,0 +1,92 @@
+package kemora;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Prices as long cents against the double path they replaced: parsing the CSV digits, pricing a booking and printing the total */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MoneyBenchmark {
+    private static final double[] POWERS_OF_TEN = {1, 10, 100, 1000, 10_000};
+
+    private byte[][] prices;
+    private long[] cents;
+    private double[] doubles;
+    private final StringBuilder text = new StringBuilder(32);
+    private int next;
+
+    @Setup
+    public void prepare() {
+        prices = new byte[1024][];
+        cents = new long[prices.length];
+        doubles = new double[prices.length];
+        for (int i = 0; i < prices.length; i++) {
+            String price = (5 + i % 40) + (i % 4 == 0 ? "" : i % 4 == 1 ? ".5" : "." + (10 + i % 90));
+            prices[i] = price.getBytes(StandardCharsets.US_ASCII);
+            cents[i] = Money.parse(price);
+            doubles[i] = Double.parseDouble(price);
+        }
+    }
+
+    private int pick() {
+        next = (next + 1) & (prices.length - 1);
+        return next;
+    }
+
+    /** The digit loop the CSV parser used before, ending in a double division */
+    @Benchmark
+    public double parseAsDouble() {
+        byte[] buf = prices[pick()];
+        long mantissa = 0;
+        int scale = -1;
+        for (byte b : buf) {
+            if (b == '.') {
+                scale = 0;
+                continue;
+            }
+            mantissa = mantissa * 10 + (b - '0');
+            if (scale >= 0) scale++;
+        }
+        return scale <= 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+    }
+
+    @Benchmark
+    public long parseAsCents() {
+        byte[] buf = prices[pick()];
+        return Money.parse(buf, 0, buf.length);
+    }
+
+    /** tickets * ticketPrice printed the way confirmBooking used to print it */
+    @Benchmark
+    public String totalAsDouble() {
+        int i = pick();
+        return String.valueOf((1 + i % 8) * doubles[i]);
+    }
+
+    @Benchmark
+    public String totalAsCents() {
+        int i = pick();
+        return Money.format(Money.total(cents[i], 1 + i % 8));
+    }
+
+    /** Total with a 10% discount and 8.5% tax, rounded half up, no formatting */
+    @Benchmark
+    public long discountAndTaxAsCents() {
+        int i = pick();
+        long subtotal = cents[i] * (1 + i % 8);
+        long discounted = subtotal - Money.percentOf(subtotal, 1000);
+        return discounted + Money.percentOf(discounted, 850);
+    }
+
+    @Benchmark
+    public StringBuilder appendTotalAsCents() {
+        int i = pick();
+        text.setLength(0);
+        return Money.append(text, Money.total(cents[i], 1 + i % 8));
+    }
+}
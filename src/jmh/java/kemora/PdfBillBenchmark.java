@@ -0,0 +1,44 @@
+package kemora;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Bills per second and bytes per bill of the plain generatePDFBill against the cached template */
+/** run with -prof gc, gc.alloc.rate.norm is the allocation per bill */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Dkemora.bill.dir=target/bench-bills"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PdfBillBenchmark {
+    private BillRequest bill;
+    private BillTemplateRenderer template;
+
+    @Setup
+    public void prepare() throws IOException {
+        Files.createDirectories(Paths.get(BillRequest.BILL_DIR));
+        Movie movie = SyntheticSchedule.catalog(30, 200).all().get(0);
+        bill = new BillRequest(1, movie, new int[] {8, 9, 10}, Money.total(movie.priceCents(), 3), "bench@kemora.lk");
+        template = new BillTemplateRenderer();
+    }
+
+    @Benchmark
+    public void generatePDFBill() throws Exception {
+        MovieTicketReservationGroup_KeMora.generatePDFBill(bill);
+    }
+
+    @Benchmark
+    public void templateToFile() throws Exception {
+        template.render(bill);
+    }
+
+    /** The template without the file write, to separate rendering from disk cost */
+    @Benchmark
+    public void templateToBuffer(Blackhole blackhole) throws Exception {
+        blackhole.consume(template.renderToBuffer(bill).size());
+    }
+}
@@ -0,0 +1,63 @@
+package kemora;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Reloading a large schedule while 10000 showtimes hold sales: the full reload and the hand-over on its own */
+/** the swap itself is one volatile write, ShowtimeReloader.lastSwapNanos reports it after every reload */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ReloadBenchmark {
+    @Param({"1000000", "5000000"})
+    int rows;
+
+    private Path csv;
+    private volatile ShowtimeCatalog catalog;
+    private ShowtimeReloader reloader;
+    private ShowtimeCatalog next;
+    private int[] forward;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        csv = SyntheticSchedule.writeCsv(rows, 500);
+        reloader = new ShowtimeReloader(csv, () -> catalog, loaded -> catalog = loaded, SyntheticSchedule.nullOut(), 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(csv);
+    }
+
+    /** A live catalog with sales spread over it, and for the hand-over benchmark its replacement ready to go */
+    @Setup(Level.Invocation)
+    public void sell() throws IOException {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        new ShowtimeCsvParser().parseFile(csv, store);
+        catalog = ShowtimeCatalog.build(store.build());
+        for (int i = 0; i < 10_000; i++) {
+            ReservationEngine.tryReserve(catalog.all().get(i * (rows / 10_000)), 2);
+        }
+        ShowtimeStore.Builder replacement = new ShowtimeStore.Builder();
+        new ShowtimeCsvParser().parseFile(csv, replacement);
+        next = ShowtimeCatalog.build(replacement.build());
+        forward = ShowtimeReloader.forwardRows(catalog, next);
+    }
+
+    @Benchmark
+    public boolean reload() {
+        return reloader.reload();
+    }
+
+    @Benchmark
+    public ShowtimeCatalog handOver() {
+        catalog.store().handOver(next.store(), forward);
+        catalog = next;
+        return catalog;
+    }
+}
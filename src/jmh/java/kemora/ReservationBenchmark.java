@@ -0,0 +1,63 @@
+package kemora;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Ticket validation and taking and giving back two seats, uncontended and with many cashiers on few showtimes */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReservationBenchmark {
+    /** 1 puts every thread on the same seat slot, 1000 spreads them out */
+    @Param({"1", "1000"})
+    int showtimes;
+
+    private Movie[] movies;
+
+    @Setup
+    public void loadCatalog() {
+        ShowtimeCatalog catalog = SyntheticSchedule.catalog(showtimes, 500);
+        movies = catalog.all().toArray(new Movie[0]);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        Movie pick(Movie[] movies) {
+            next = next + 1 == movies.length ? 0 : next + 1;
+            return movies[next];
+        }
+    }
+
+    @Benchmark
+    public int validateTicketQuantity(Cursor cursor) throws InvalidTicketQuantityException, OverbookingException {
+        return MovieTicketReservationGroup_KeMora.validateTicketQuantity("4", cursor.pick(movies));
+    }
+
+    private void reserveAndRelease(Cursor cursor) throws OverbookingException {
+        Movie movie = cursor.pick(movies);
+        ReservationEngine.release(movie, ReservationEngine.reserve(movie, 2));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void reserveAndRelease1(Cursor cursor) throws OverbookingException {
+        reserveAndRelease(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void reserveAndRelease4(Cursor cursor) throws OverbookingException {
+        reserveAndRelease(cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void reserveAndRelease16(Cursor cursor) throws OverbookingException {
+        reserveAndRelease(cursor);
+    }
+}
@@ -0,0 +1,70 @@
+package kemora;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** A sales dashboard refresh from the aggregates against rescanning every showtime, and what keeping them costs a booking */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SalesAggregatesBenchmark {
+    @Param({"10000", "1000000"})
+    int rows;
+
+    private ShowtimeCatalog catalog;
+    private Movie[] movies;
+
+    @Setup
+    public void loadCatalog() {
+        catalog = SyntheticSchedule.catalog(rows, 500);
+        movies = catalog.all().toArray(new Movie[0]);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        Movie pick(Movie[] movies) {
+            next = next + 1 == movies.length ? 0 : next + 1;
+            return movies[next];
+        }
+    }
+
+    /** Seats sold, occupancy and revenue for every language, read off the adders */
+    @Benchmark
+    public List<SalesAggregates.Figures> languagesFromAggregates() {
+        return catalog.sales().all(SalesAggregates.Dimension.LANGUAGE);
+    }
+
+    /** The same figures the way a dashboard had to get them before, one pass over every showtime */
+    @Benchmark
+    public long[][] languagesByRescan() {
+        ShowtimeStore store = catalog.store();
+        long[][] figures = new long[store.languages().size()][3];
+        for (int row = 0; row < store.size(); row++) {
+            long[] language = figures[store.languageId(row)];
+            int sold = store.totalSeats(row) - store.availableSeats(row);
+            language[0] += store.totalSeats(row);
+            language[1] += sold;
+            language[2] += sold * store.priceCents(row);
+        }
+        return figures;
+    }
+
+    @Benchmark
+    public SalesAggregates.Figures oneMovie() {
+        return catalog.sales().figures(SalesAggregates.Dimension.MOVIE, SyntheticSchedule.code(7));
+    }
+
+    /** Compare with ReservationBenchmark.reserveAndRelease4, each of the two count changes now also adds to the sales counters */
+    @Benchmark
+    @Threads(4)
+    public void reserveAndRelease4(Cursor cursor) throws OverbookingException {
+        Movie movie = cursor.pick(movies);
+        ReservationEngine.release(movie, ReservationEngine.reserve(movie, 2));
+    }
+}
@@ -0,0 +1,108 @@
+package kemora;
+
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Kiosk searches through ShowtimeSearch against filtering every showtime, with a tenth of the showtimes sold out */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SearchBenchmark {
+    @Param({"100000", "1000000", "5000000"})
+    int rows;
+
+    private ShowtimeCatalog catalog;
+    private ShowtimeSearch search;
+    private ShowtimeQuery[] kiosk;
+    private ShowtimeQuery browse;
+    private ShowtimeQuery nothing;
+    private int deepCursor;
+    private int next;
+
+    @Setup
+    public void loadCatalog() {
+        catalog = SyntheticSchedule.catalog(rows, 200);
+        ShowtimeStore store = catalog.store();
+        Random random = new Random(16);
+        for (int i = 0; i < rows / 10; i++) {
+            int row = random.nextInt(rows);
+            store.tryReserve(row, store.availableSeats(row));
+        }
+        search = catalog.search();
+
+        // "Sinhala comedies on this date under 12.00 with 4 seats left", across the languages, genres and dates
+        kiosk = new ShowtimeQuery[64];
+        for (int i = 0; i < kiosk.length; i++) {
+            kiosk[i] = new ShowtimeQuery().language(SyntheticSchedule.LANGUAGES[i % 4]).genre(SyntheticSchedule.GENRES[(i / 4) % 8])
+                    .on(SyntheticSchedule.date(i * SyntheticSchedule.SHOWTIMES.length)).priceUnder(1200).seatsLeft(4);
+        }
+        browse = new ShowtimeQuery().between("2025-04-03", "2025-04-06").seatsLeft(1);
+        // Sinhala showtimes never cost 8.00 in the synthetic schedule, so this matches nothing
+        nothing = new ShowtimeQuery().language("Sinhala").priceUnder(850);
+
+        ShowtimeSearch.Page page = search.search(browse, 0, 20);
+        for (int i = 0; i < 50 && page.next >= 0; i++) page = search.search(browse, page.next, 20);
+        deepCursor = Math.max(0, page.next);
+    }
+
+    private ShowtimeQuery nextKioskQuery() {
+        next = next + 1 == kiosk.length ? 0 : next + 1;
+        return kiosk[next];
+    }
+
+    @Benchmark
+    public ShowtimeSearch.Page kioskQuery() {
+        return search.search(nextKioskQuery(), 0, 20);
+    }
+
+    /** A date range with no other filter, the page is full after a few rows */
+    @Benchmark
+    public ShowtimeSearch.Page browseDates() {
+        return search.search(browse, 0, 20);
+    }
+
+    /** The same browse fifty pages in */
+    @Benchmark
+    public ShowtimeSearch.Page browseDeepPage() {
+        return search.search(browse, deepCursor, 20);
+    }
+
+    /** Filters that each match many showtimes but none together */
+    @Benchmark
+    public ShowtimeSearch.Page emptyResult() {
+        return search.search(nothing, 0, 20);
+    }
+
+    /** The kiosk query answered by checking every showtime and sorting the matches */
+    @Benchmark
+    public List<Movie> fullScan() {
+        ShowtimeQuery query = nextKioskQuery();
+        List<Movie> matches = new ArrayList<>();
+        for (Movie movie : catalog.all()) {
+            long cents = movie.priceCents();
+            int day = movie.store.epochDay(movie.row);
+            if (movie.language().equalsIgnoreCase(query.language) && movie.genre().equalsIgnoreCase(query.genre)
+                    && day >= query.fromDay && day <= query.toDay && cents <= query.maxPriceCents
+                    && movie.availableSeats() >= query.minSeats) {
+                matches.add(movie);
+            }
+        }
+        matches.sort(Comparator.comparing(Movie::date).thenComparingLong(Movie::priceCents));
+        return matches.subList(0, Math.min(20, matches.size()));
+    }
+
+    /** Building the indexes for a freshly loaded catalog, paid once on the first search */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public ShowtimeSearch buildIndexes() {
+        return ShowtimeSearch.build(catalog.store());
+    }
+}
@@ -0,0 +1,72 @@
+package kemora;
+
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Best-available search and claim in a 500-seat hall at different occupancy, alone and with other cashiers holding seats */
+/** the hall is filled centre first in random group sizes and then some groups are given back, so the free seats are fragmented */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SeatMapBenchmark {
+    private static final int HALL = 500;
+
+    @Param({"0", "50", "80", "95"})
+    int occupancyPercent;
+
+    @Param({"2", "4", "6"})
+    int tickets;
+
+    private SeatMap seatMap;
+
+    @Setup(Level.Iteration)
+    public void fillHall() {
+        seatMap = new SeatMap(HALL, 0);
+        Random random = new Random(7);
+        List<int[]> groups = new ArrayList<>();
+        int target = HALL * occupancyPercent / 100;
+        int sold = 0;
+        while (sold < target) {
+            int[] group = seatMap.claim(Math.min(target - sold, 1 + random.nextInt(6)));
+            groups.add(group);
+            sold += group.length;
+        }
+        Collections.shuffle(groups, random);
+        // give back a tenth of the groups and sell the same number of single seats elsewhere
+        for (int i = 0; i < groups.size() / 10; i++) {
+            int[] group = groups.get(i);
+            seatMap.release(group);
+            for (int j = 0; j < group.length; j++) seatMap.claim(1);
+        }
+    }
+
+    private int[] claimAndRelease() {
+        int[] seats = seatMap.claim(tickets);
+        seatMap.release(seats);
+        return seats;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int[] alone() {
+        return claimAndRelease();
+    }
+
+    /** four cashiers at once, at 95% that is every free seat of the hall held at the same time */
+    @Benchmark
+    @Threads(4)
+    public int[] concurrentHolds() {
+        return claimAndRelease();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long searchOnly() {
+        return seatMap.findBlock(tickets);
+    }
+}
@@ -0,0 +1,50 @@
+package kemora;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Cold start to a ready catalog: parsing the CSV against mapping the snapshot written by an earlier run */
+/** single shot, each iteration is one restart in a fresh state, the page cache stays warm as it would on a quick restart */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 3, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 0)
+@Measurement(iterations = 5)
+public class SnapshotLoadBenchmark {
+    @Param({"1000000", "5000000"})
+    int rows;
+
+    private Path csv;
+    private ShowtimeSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        csv = SyntheticSchedule.writeCsv(rows, 200);
+        snapshot = ShowtimeSnapshot.forDataset(csv, null, 0);
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        long[] stamp = snapshot.stamp();
+        MovieTicketReservationGroup_KeMora.readShowtimes(csv, store, SyntheticSchedule.nullOut());
+        snapshot.write(store, stamp, SyntheticSchedule.nullOut());
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(snapshot.file());
+    }
+
+    @Benchmark
+    public ShowtimeCatalog fromCsv() throws IOException {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        MovieTicketReservationGroup_KeMora.readShowtimes(csv, store, SyntheticSchedule.nullOut());
+        return ShowtimeCatalog.build(store.build());
+    }
+
+    @Benchmark
+    public ShowtimeCatalog fromSnapshot() {
+        return ShowtimeCatalog.build(snapshot.load(SyntheticSchedule.nullOut()));
+    }
+}
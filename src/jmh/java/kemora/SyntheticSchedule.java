@@ -0,0 +1,71 @@
+package kemora;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/** Deterministic synthetic schedules for the benchmarks, shaped like the real CSV */
+/** every movie code gets 10 dates with Morning, Afternoon and Evening shows, so 30 rows per code */
+final class SyntheticSchedule {
+    static final String HEADER = "Movie Code,Movie Name,Date,Showtime,Total Seats,Available Seats,Ticket Price,Language,Genre";
+    static final String[] SHOWTIMES = {"Morning", "Afternoon", "Evening"};
+    static final String[] LANGUAGES = {"English", "Sinhala", "Tamil", "Hindi"};
+    static final String[] GENRES = {"Action", "Comedy", "Drama", "Horror", "Romance", "Sci-Fi", "Thriller", "Adventure"};
+    static final int ROWS_PER_MOVIE = 30;
+
+    private SyntheticSchedule() {
+    }
+
+    static int movies(int rows) {
+        return Math.max(1, (rows + ROWS_PER_MOVIE - 1) / ROWS_PER_MOVIE);
+    }
+
+    static String code(int movie) {
+        return String.format("M%06d", movie);
+    }
+
+    static String date(int row) {
+        return String.format("2025-04-%02d", 1 + (row / SHOWTIMES.length) % 10);
+    }
+
+    /** Writes a CSV with the real header and the given number of rows */
+    static Path writeCsv(int rows, int seats) throws IOException {
+        Path path = Files.createTempFile("showtimes-" + rows + "-", ".csv");
+        path.toFile().deleteOnExit();
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (int row = 0; row < rows; row++) {
+                int movie = row / ROWS_PER_MOVIE;
+                out.write(code(movie) + ",Movie Number " + movie + "," + date(row) + "," + SHOWTIMES[row % 3] + ","
+                        + seats + "," + (seats - row % 10) + "," + price(movie) + "," + LANGUAGES[movie % 4] + "," + GENRES[movie % 8]);
+                out.newLine();
+            }
+        }
+        return path;
+    }
+
+    /** Feeds the same rows straight into a sink, without a file */
+    static void fill(ShowtimeRowSink sink, int rows, int seats) {
+        for (int row = 0; row < rows; row++) {
+            int movie = row / ROWS_PER_MOVIE;
+            sink.row(code(movie), "Movie Number " + movie, date(row), SHOWTIMES[row % 3], seats, seats - row % 10,
+                    Money.parse(price(movie)), LANGUAGES[movie % 4], GENRES[movie % 8]);
+        }
+    }
+
+    static ShowtimeCatalog catalog(int rows, int seats) {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        fill(store, rows, seats);
+        return ShowtimeCatalog.build(store.build());
+    }
+
+    private static String price(int movie) {
+        return (8 + movie % 10) + (movie % 2 == 0 ? ".00" : ".50");
+    }
+
+    /** Swallows console output of the code under test */
+    static PrintStream nullOut() {
+        return new PrintStream(OutputStream.nullOutputStream());
+    }
+}
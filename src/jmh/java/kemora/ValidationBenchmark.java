@@ -0,0 +1,123 @@
+package kemora;
+
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Validating a code and a quantity on a cashier workload where 30% of the inputs are wrong */
+/** the wrong ones are a mix of unknown codes, typed letters, zero tickets and sold-out requests */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ValidationBenchmark {
+    private static final int INPUTS = 1024;
+    // the usual pattern found in tutorials, for comparison with checkEmail
+    private static final Pattern EMAIL = Pattern.compile("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
+
+    @Param({"30"})
+    int invalidPercent;
+
+    private String[] codes;
+    private String[] quantities;
+    private String[] emails;
+    private Movie movie;
+    private int next;
+
+    @Setup
+    public void buildWorkload() {
+        ShowtimeCatalog catalog = SyntheticSchedule.catalog(30_000, 200);
+        MovieTicketReservationGroup_KeMora.useCatalog(catalog, null);
+        movie = catalog.all().get(0);
+        Random random = new Random(42);
+        codes = new String[INPUTS];
+        quantities = new String[INPUTS];
+        emails = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            codes[i] = SyntheticSchedule.code(random.nextInt(1000));
+            quantities[i] = Integer.toString(1 + random.nextInt(10));
+            emails[i] = "guest" + random.nextInt(100_000) + "@mail" + random.nextInt(20) + ".example.com";
+            if (random.nextInt(100) < invalidPercent) {
+                switch (random.nextInt(4)) {
+                    case 0 -> codes[i] = "X" + codes[i];
+                    case 1 -> quantities[i] = "tw0";
+                    case 2 -> quantities[i] = "0";
+                    default -> quantities[i] = Integer.toString(movie.totalSeats() + 1);
+                }
+                emails[i] = random.nextBoolean() ? emails[i].replace("@", "") : emails[i].replace(".example", "..example");
+            }
+        }
+    }
+
+    private int nextInput() {
+        next = (next + 1) & (INPUTS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public void resultObjects(Blackhole blackhole) {
+        int i = nextInput();
+        ValidationResult<List<Movie>> code = MovieTicketReservationGroup_KeMora.checkMovieCode(codes[i]);
+        blackhole.consume(code.isValid() ? code.value() : code.error());
+        ValidationResult<Integer> quantity = MovieTicketReservationGroup_KeMora.checkTicketQuantity(quantities[i], movie);
+        blackhole.consume(quantity.isValid() ? quantity.value() : quantity.error());
+    }
+
+    /** The address the bill is emailed to, checked before the hold is confirmed */
+    @Benchmark
+    public Object email() {
+        ValidationResult<String> email = MovieTicketReservationGroup_KeMora.checkEmail(emails[nextInput()]);
+        return email.isValid() ? email.value() : email.error();
+    }
+
+    @Benchmark
+    public boolean emailByRegex() {
+        return EMAIL.matcher(emails[nextInput()]).matches();
+    }
+
+    /** The checked exceptions kept for older callers, now without stack traces */
+    @Benchmark
+    public void compatibilityExceptions(Blackhole blackhole) {
+        int i = nextInput();
+        try {
+            blackhole.consume(MovieTicketReservationGroup_KeMora.validateMovieCode(codes[i]));
+        }
+        catch (InvalidMovieCodeException e) {
+            blackhole.consume(e.getMessage());
+        }
+        try {
+            blackhole.consume(MovieTicketReservationGroup_KeMora.validateTicketQuantity(quantities[i], movie));
+        }
+        catch (InvalidTicketQuantityException | OverbookingException e) {
+            blackhole.consume(e.getMessage());
+        }
+    }
+
+    /** How validation behaved before: Integer.parseInt and exceptions that fill in a stack trace */
+    @Benchmark
+    public void stackTraceExceptions(Blackhole blackhole) {
+        int i = nextInput();
+        try {
+            List<Movie> showtimes = MovieTicketReservationGroup_KeMora.checkMovieCode(codes[i]).value();
+            if (showtimes == null) throw new Exception("Movie code cannot be found! plz enter a new code.");
+            blackhole.consume(showtimes);
+        }
+        catch (Exception e) {
+            blackhole.consume(e.getMessage());
+        }
+        try {
+            int tickets = Integer.parseInt(quantities[i]);
+            if (tickets <= 0) throw new Exception("Ticket quantity must be a positive integer.");
+            if (tickets > movie.availableSeats()) throw new Exception("Not enough seats available! Try booking fewer tickets.");
+            blackhole.consume(tickets);
+        }
+        catch (Exception e) {
+            blackhole.consume(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package kemora;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Emails rendered bills through SMTP, one small file per bill in the outbox directory until the mail server accepts it */
+/** a dispatcher thread takes the bills that are due, holds each recipient domain to its rate limit and hands */
+/** per-domain batches to the mailer threads, each batch goes over one connection */
+/** a bill the server defers (4xx, dropped connection) is retried with exponential backoff, a refused one (5xx) goes to failed/ */
+/** delivery is at least once: a crash between the server accepting a bill and its file being deleted sends it again */
+class BillOutbox {
+    private static final String SUFFIX = ".mail";
+    private static final String FAILED = "failed";
+    // waiting slots are rounded up to this, so a domain's slots come due together and share a connection
+    private static final long TICK_MILLIS = 100;
+
+    /** Everything the outbox can be tuned with, read from -Dkemora.smtp.* and -Dkemora.mail.* */
+    static final class Settings {
+        Path directory = Paths.get(System.getProperty("kemora.mail.dir", "bill-outbox"));
+        String host = System.getProperty("kemora.smtp.host");
+        int port = Integer.getInteger("kemora.smtp.port", 25);
+        String from = System.getProperty("kemora.smtp.from", "bills@kemora.local");
+        int timeoutMillis = Integer.getInteger("kemora.smtp.timeoutMillis", 10_000);
+        int workers = Integer.getInteger("kemora.mail.workers", 2);
+        int batchSize = Integer.getInteger("kemora.mail.batch", 20);
+        // messages per second for one recipient domain, -Dkemora.mail.limit.<domain> sets it for that domain
+        double perDomainPerSecond = Double.parseDouble(System.getProperty("kemora.mail.perDomainPerSecond", "5"));
+        long backoffMillis = Long.getLong("kemora.mail.backoffMillis", 1000);
+        long maxBackoffMillis = Long.getLong("kemora.mail.maxBackoffMillis", 300_000);
+        int maxAttempts = Integer.getInteger("kemora.mail.maxAttempts", 8);
+
+        double perSecond(String domain) {
+            String limit = System.getProperty("kemora.mail.limit." + domain);
+            try {
+                return limit == null ? perDomainPerSecond : Double.parseDouble(limit);
+            }
+            catch (NumberFormatException e) {
+                System.out.println("Error reading -Dkemora.mail.limit." + domain + ", using " + perDomainPerSecond + ": " + e.getMessage());
+                return perDomainPerSecond;
+            }
+        }
+    }
+
+    /** One bill waiting to be emailed, its file holds the same fields so a restart can pick it up */
+    static final class Delivery implements Delayed {
+        final long bookingId;
+        final String to;
+        final String domain;
+        final Path pdf;
+        final String summary;
+        final long queuedMillis;
+        int attempts;
+        volatile long dueMillis;
+        // already holds a slot under its domain's rate limit, set while it waits for that slot
+        boolean slotted;
+        String lastError = "";
+
+        Delivery(long bookingId, String to, Path pdf, String summary, long queuedMillis) {
+            this.bookingId = bookingId;
+            this.to = to;
+            this.domain = to.substring(to.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+            this.pdf = pdf;
+            this.summary = summary;
+            this.queuedMillis = queuedMillis;
+            this.dueMillis = queuedMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueMillis, ((Delivery) other).dueMillis);
+        }
+    }
+
+    private final Settings settings;
+    private final DelayQueue<Delivery> pending = new DelayQueue<>();
+    private final Map<String, DomainRateLimit> limits = new HashMap<>();
+    private final ThreadPoolExecutor mailers;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /** Picks up the bills a previous run left in the directory, then starts sending */
+    BillOutbox(Settings settings) throws IOException {
+        this.settings = settings;
+        Files.createDirectories(settings.directory.resolve(FAILED));
+        int recovered = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(settings.directory, "*" + SUFFIX + "*")) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().endsWith(SUFFIX)) {
+                    Files.deleteIfExists(file); // a .tmp that never got renamed, its bill is written again or was never queued
+                    continue;
+                }
+                try {
+                    pending.add(read(file));
+                    queued.increment();
+                    recovered++;
+                }
+                catch (IOException | RuntimeException e) {
+                    System.out.println("Error reading outbox entry " + file + ", moving it to " + FAILED + ": " + e.getMessage());
+                    Files.move(file, settings.directory.resolve(FAILED).resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        if (recovered > 0) System.out.println("Outbox: " + recovered + " bills from the last run still to be emailed");
+        ThreadFactory mailerThreads = task -> {
+            Thread thread = new Thread(task, "bill-mailer");
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.mailers = new ThreadPoolExecutor(settings.workers, settings.workers, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), mailerThreads);
+        this.dispatcher = new Thread(this::dispatchLoop, "bill-outbox");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /** The outbox for -Dkemora.smtp.host, or null when no mail server is configured and bills are only written */
+    static BillOutbox fromSystemProperties() {
+        Settings settings = new Settings();
+        if (settings.host == null) return null;
+        try {
+            return new BillOutbox(settings);
+        }
+        catch (IOException e) {
+            System.out.println("Error opening bill outbox " + settings.directory + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Queues a rendered bill, its file is on disk before this returns */
+    void add(BillRequest bill) throws IOException {
+        Movie movie = bill.movie;
+        String summary = movie.name() + ", " + movie.date() + " " + movie.showtime() + ", seats " + SeatMap.labels(bill.seats)
+                + ", total " + Money.format(bill.totalCents);
+        add(bill.bookingId, bill.email, Paths.get(bill.fileName).toAbsolutePath(), summary);
+    }
+
+    void add(long bookingId, String email, Path pdf, String summary) throws IOException {
+        Delivery delivery = new Delivery(bookingId, email, pdf, summary, System.currentTimeMillis());
+        // an entry of that id still waiting would be overwritten and its bill never sent
+        if (Files.exists(entry(delivery))) throw new IOException("bill " + bookingId + " is already in the outbox");
+        write(delivery);
+        queued.increment();
+        pending.add(delivery);
+    }
+
+    /** Stops sending and waits for the batches already on the wire, whatever is left stays on disk for the next start */
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        running = false;
+        dispatcher.join(unit.toMillis(timeout));
+        mailers.shutdown();
+        return mailers.awaitTermination(timeout, unit);
+    }
+
+    /** Bills not yet accepted by the mail server or given up on, including those waiting for a retry */
+    long pending() {
+        return queued.sum() - sent.sum() - failed.sum();
+    }
+
+    /** Bills handed to this outbox, those picked up from the last run included */
+    long queued() {
+        return queued.sum();
+    }
+
+    long sent() {
+        return sent.sum();
+    }
+
+    /** Attempts the server deferred, each one is sent again later */
+    long retried() {
+        return retried.sum();
+    }
+
+    /** Bills given up on, their entries are in failed/ */
+    long failed() {
+        return failed.sum();
+    }
+
+    /** Sends that were due but had to wait for their domain's rate limit */
+    long rateLimited() {
+        return rateLimited.sum();
+    }
+
+    long batches() {
+        return batches.sum();
+    }
+
+    String metricsSummary() {
+        return String.format("mail queued=%d sent=%d retried=%d failed=%d rateLimited=%d batches=%d",
+                queued(), sent(), retried(), failed(), rateLimited(), batches());
+    }
+
+    private void dispatchLoop() {
+        List<Delivery> due = new ArrayList<>();
+        while (running) {
+            try {
+                Delivery first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                due.add(first);
+                pending.drainTo(due);
+                dispatch(due);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            finally {
+                due.clear();
+            }
+        }
+    }
+
+    /** Groups the due bills by domain and sends those their domain's limit lets go now */
+    /** the others get a slot further on and wait in the queue until it comes, so each waits only once */
+    private void dispatch(List<Delivery> due) {
+        Map<String, List<Delivery>> byDomain = new LinkedHashMap<>();
+        for (Delivery delivery : due) byDomain.computeIfAbsent(delivery.domain, k -> new ArrayList<>()).add(delivery);
+        long now = System.nanoTime();
+        for (Map.Entry<String, List<Delivery>> entry : byDomain.entrySet()) {
+            DomainRateLimit limit = limits.computeIfAbsent(entry.getKey(), d -> new DomainRateLimit(settings.perSecond(d)));
+            List<Delivery> ready = new ArrayList<>();
+            for (Delivery delivery : entry.getValue()) {
+                long waitNanos = delivery.slotted ? 0 : limit.reserve(now);
+                delivery.slotted = waitNanos > 0;
+                if (waitNanos == 0) {
+                    ready.add(delivery);
+                    continue;
+                }
+                long slot = System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(waitNanos);
+                delivery.dueMillis = (slot + TICK_MILLIS - 1) / TICK_MILLIS * TICK_MILLIS;
+                rateLimited.increment();
+                pending.add(delivery);
+            }
+            for (int from = 0; from < ready.size(); from += settings.batchSize) {
+                List<Delivery> batch = ready.subList(from, Math.min(ready.size(), from + settings.batchSize));
+                mailers.execute(() -> send(batch));
+            }
+        }
+    }
+
+    /** Sends one domain's batch over one connection, opening another if the server drops it part way */
+    /** when the server cannot be reached at all, the rest of the batch is deferred */
+    private void send(List<Delivery> batch) {
+        long started = Metrics.start();
+        batches.increment();
+        SmtpClient client = null;
+        String unreachable = null;
+        for (Delivery delivery : batch) {
+            delivery.attempts++;
+            if (client == null && unreachable == null) {
+                try {
+                    client = new SmtpClient(settings.host, settings.port, settings.timeoutMillis);
+                }
+                catch (IOException e) {
+                    unreachable = "cannot reach " + settings.host + ":" + settings.port + " (" + e.getMessage() + ")";
+                }
+            }
+            if (client == null) {
+                deferred(delivery, unreachable);
+                continue;
+            }
+            byte[] message;
+            try {
+                message = SmtpClient.message(settings.from, delivery.to, delivery.bookingId, delivery.summary, delivery.pdf);
+            }
+            catch (IOException e) {
+                refused(delivery, "bill file cannot be read: " + e.getMessage());
+                continue;
+            }
+            try {
+                int reply = client.send(settings.from, delivery.to, message);
+                if (reply / 100 == 2) delivered(delivery);
+                else if (reply / 100 == 5) refused(delivery, client.lastReply());
+                else deferred(delivery, client.lastReply());
+                if (reply == 421) client = closeQuietly(client, false); // the server is closing this connection
+            }
+            catch (IOException e) {
+                deferred(delivery, "connection lost (" + e.getMessage() + ")");
+                client = closeQuietly(client, false);
+            }
+        }
+        if (client != null) closeQuietly(client, true);
+        Metrics.MAIL_SEND.since(started);
+    }
+
+    private static SmtpClient closeQuietly(SmtpClient client, boolean quit) {
+        client.close(quit);
+        return null;
+    }
+
+    private void delivered(Delivery delivery) {
+        try {
+            Files.deleteIfExists(entry(delivery));
+        }
+        catch (IOException e) {
+            // the bill would be emailed again after a restart, nothing is lost
+            System.out.println("Error removing outbox entry for bill " + delivery.bookingId + ": " + e.getMessage());
+        }
+        sent.increment();
+        Metrics.BILL_EMAIL.record((System.currentTimeMillis() - delivery.queuedMillis) * 1_000_000);
+    }
+
+    /** Tries again after the backoff for this attempt, half of it fixed and half random so retries of one outage spread out */
+    private void deferred(Delivery delivery, String reason) {
+        delivery.lastError = reason;
+        if (delivery.attempts >= settings.maxAttempts) {
+            refused(delivery, "gave up after " + delivery.attempts + " attempts, last: " + reason);
+            return;
+        }
+        long backoff = Math.min(settings.maxBackoffMillis, settings.backoffMillis << Math.min(30, delivery.attempts - 1));
+        delivery.dueMillis = System.currentTimeMillis() + backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        retried.increment();
+        try {
+            write(delivery);
+        }
+        catch (IOException e) {
+            // the old entry is still there, a restart only forgets the attempt count
+            System.out.println("Error updating outbox entry for bill " + delivery.bookingId + ": " + e.getMessage());
+        }
+        if (running) pending.add(delivery);
+    }
+
+    private void refused(Delivery delivery, String reason) {
+        delivery.lastError = reason;
+        failed.increment();
+        System.out.println("Error emailing bill " + delivery.bookingId + " to " + delivery.to + ": " + reason);
+        try {
+            write(delivery);
+            Files.move(entry(delivery), settings.directory.resolve(FAILED).resolve(entry(delivery).getFileName()),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e) {
+            System.out.println("Error moving outbox entry for bill " + delivery.bookingId + " to " + FAILED + ": " + e.getMessage());
+        }
+    }
+
+    private Path entry(Delivery delivery) {
+        return settings.directory.resolve(delivery.bookingId + SUFFIX);
+    }
+
+    /** Writes the entry through a temporary file and forces it, so a crash leaves the old entry or the new one */
+    private void write(Delivery delivery) throws IOException {
+        Properties fields = new Properties();
+        fields.setProperty("bookingId", Long.toString(delivery.bookingId));
+        fields.setProperty("to", delivery.to);
+        fields.setProperty("pdf", delivery.pdf.toString());
+        fields.setProperty("summary", delivery.summary);
+        fields.setProperty("queuedMillis", Long.toString(delivery.queuedMillis));
+        fields.setProperty("attempts", Integer.toString(delivery.attempts));
+        fields.setProperty("dueMillis", Long.toString(delivery.dueMillis));
+        fields.setProperty("lastError", delivery.lastError);
+        Path target = entry(delivery);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+            fields.store(new OutputStreamWriter(out, StandardCharsets.UTF_8), null);
+            out.getFD().sync();
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Delivery read(Path file) throws IOException {
+        Properties fields = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            fields.load(in);
+        }
+        Delivery delivery = new Delivery(Long.parseLong(fields.getProperty("bookingId")), fields.getProperty("to"),
+                Paths.get(fields.getProperty("pdf")), fields.getProperty("summary", ""), Long.parseLong(fields.getProperty("queuedMillis")));
+        delivery.attempts = Integer.parseInt(fields.getProperty("attempts", "0"));
+        delivery.dueMillis = Long.parseLong(fields.getProperty("dueMillis", fields.getProperty("queuedMillis")));
+        delivery.lastError = fields.getProperty("lastError", "");
+        return delivery;
+    }
+}
@@ -0,0 +1,104 @@
+package kemora;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/** Emails bills through a BillOutbox to a LocalSmtpServer that fails on purpose, and reports throughput, retries and rate limits */
+/** half way through the outbox is shut down and opened again on the same directory, no bill may be lost: each is accepted or */
+/** lands in failed/, and one whose reply was dropped is sent again and may arrive more than once, delivery is at least once */
+/** usage: java kemora.BillOutboxLoadGenerator [bills] [domains] [perDomainPerSecond] [transientRate] [permanentRate] [dropRate] */
+public class BillOutboxLoadGenerator {
+    public static void main(String[] args) throws Exception {
+        int bills = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int domains = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        double perDomainPerSecond = args.length > 2 ? Double.parseDouble(args[2]) : 50;
+        double transientRate = args.length > 3 ? Double.parseDouble(args[3]) : 0.2;
+        double permanentRate = args.length > 4 ? Double.parseDouble(args[4]) : 0.02;
+        double dropRate = args.length > 5 ? Double.parseDouble(args[5]) : 0.02;
+
+        Path dir = Files.createTempDirectory("kemora-outbox");
+        Path pdf = dir.resolve("Ticket_Bill_sample.pdf");
+        // about the size of a rendered bill
+        Files.write(pdf, ("%PDF-1.4\n" + "0123456789abcdef".repeat(96) + "\n%%EOF\n").getBytes(StandardCharsets.US_ASCII));
+
+        try (LocalSmtpServer standIn = new LocalSmtpServer(0, transientRate, permanentRate, dropRate)) {
+            BillOutbox.Settings settings = new BillOutbox.Settings();
+            settings.directory = dir.resolve("outbox");
+            settings.host = "127.0.0.1";
+            settings.port = standIn.port();
+            settings.workers = 4;
+            settings.perDomainPerSecond = perDomainPerSecond;
+            settings.backoffMillis = 50;
+            settings.maxBackoffMillis = 2000;
+
+            long[] addNanos = new long[bills];
+            long start = System.nanoTime();
+            BillOutbox outbox = new BillOutbox(settings);
+            long sentBefore = 0;
+            long failedBefore = 0;
+            long retriedBefore = 0;
+            long batchesBefore = 0;
+            long rateLimitedBefore = 0;
+            for (int i = 0; i < bills; i++) {
+                if (i == bills / 2) {
+                    // a restart with work in flight, what was not sent yet must come back from the directory
+                    Thread.sleep(500);
+                    outbox.shutdown(1, TimeUnit.MINUTES);
+                    sentBefore = outbox.sent();
+                    failedBefore = outbox.failed();
+                    retriedBefore = outbox.retried();
+                    batchesBefore = outbox.batches();
+                    rateLimitedBefore = outbox.rateLimited();
+                    outbox = new BillOutbox(settings);
+                }
+                long begin = System.nanoTime();
+                outbox.add(i + 1, "guest" + i + "@domain" + (i % domains) + ".test", pdf, "Sample Movie, 2025-03-01 Evening, seats A1, total 12.50");
+                addNanos[i] = System.nanoTime() - begin;
+            }
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(10);
+            while (outbox.pending() > 0 && System.nanoTime() < deadline) Thread.sleep(20);
+            long elapsed = System.nanoTime() - start;
+            outbox.shutdown(1, TimeUnit.MINUTES);
+
+            long sent = sentBefore + outbox.sent();
+            long failed = failedBefore + outbox.failed();
+            long retried = retriedBefore + outbox.retried();
+            Arrays.sort(addNanos);
+            System.out.printf("bills=%d domains=%d limit=%.0f/s per domain, injected 451=%.0f%% 550=%.0f%% drop=%.0f%%%n",
+                    bills, domains, perDomainPerSecond, transientRate * 100, permanentRate * 100, dropRate * 100);
+            System.out.printf("sent=%d failed=%d lost=%d retried=%d attempts/bill=%.2f batches=%d rateLimited=%d%n",
+                    sent, failed, bills - sent - failed, retried, (sent + failed + retried) / (double) bills,
+                    batchesBefore + outbox.batches(), rateLimitedBefore + outbox.rateLimited());
+            System.out.printf("throughput=%.1f bills/s (limit allows %.0f/s over all domains) in %.2fs%n",
+                    sent / (elapsed / 1e9), perDomainPerSecond * domains, elapsed / 1e9);
+            System.out.printf("outbox add p50=%.1fus p99=%.1fus max=%.1fus%n",
+                    addNanos[bills / 2] / 1e3, addNanos[(int) (bills * 0.99)] / 1e3, addNanos[bills - 1] / 1e3);
+            LatencyHistogram email = Metrics.BILL_EMAIL;
+            System.out.printf("queued to accepted p50=%.0fms p99=%.0fms max=%.0fms%n",
+                    email.percentile(0.50) / 1e6, email.percentile(0.99) / 1e6, email.maxNanos() / 1e6);
+            long peak = 0;
+            for (String domain : standIn.domains()) peak = Math.max(peak, standIn.peakPerSecond(domain));
+            System.out.printf("busiest domain second=%d messages (limit %.0f)%n", peak, perDomainPerSecond);
+            System.out.println(standIn.summary());
+            // a dropped reply makes the outbox send that bill again, the server sees it twice but it is one bill
+            System.out.printf("distinct bills at the server=%d, sent=%d, the difference arrived on a last attempt whose reply was lost%n",
+                    standIn.accepted() - standIn.duplicates(), sent);
+        }
+        finally {
+            deleteTree(dir);
+        }
+    }
+
+    /** Removes the directory with the outbox, failed/ and the sample bill in it */
+    private static void deleteTree(Path dir) throws IOException {
+        List<Path> paths;
+        try (var walk = Files.walk(dir)) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path path : paths) Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,173 @@
+package kemora;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Renders bills in the background so the cashier can start the next sale straight away */
+/** the queue is bounded, when it is full the booking thread waits for room instead of piling up work */
+/** with an outbox, each written bill is handed to it for emailing by the renderer thread, never by the booking thread */
+class BillPipeline {
+    private final BillRenderer renderer;
+    private final BillOutbox outbox;
+    private final ThreadPoolExecutor workers;
+    private final BlockingQueue<Runnable> queue;
+    // the bills and their outbox entries are named by booking id, so an id must not come back after a restart
+    private final BookingIds bookingIds;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder blockedSubmits = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    BillPipeline(BillRenderer renderer, int workerCount, int queueCapacity) {
+        this(renderer, workerCount, queueCapacity, null);
+    }
+
+    BillPipeline(BillRenderer renderer, int workerCount, int queueCapacity, BillOutbox outbox) {
+        this.renderer = renderer;
+        this.outbox = outbox;
+        try {
+            if (BillRequest.BILL_DIR != null) Files.createDirectories(Paths.get(BillRequest.BILL_DIR));
+            this.bookingIds = new BookingIds(Paths.get(BillRequest.BILL_DIR == null ? "" : BillRequest.BILL_DIR, "booking-ids"));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        ThreadFactory threads = task -> {
+            Thread thread = new Thread(task, "bill-renderer");
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS, queue, threads,
+                (task, executor) -> waitForRoom(task, executor));
+    }
+
+    /** Pool and queue sizes come from -Dkemora.bill.workers and -Dkemora.bill.queue, a null outbox only writes the files */
+    static BillPipeline fromSystemProperties(BillRenderer renderer, BillOutbox outbox) {
+        return new BillPipeline(renderer, Integer.getInteger("kemora.bill.workers", 2),
+                Integer.getInteger("kemora.bill.queue", 256), outbox);
+    }
+
+    /** Hands a bill to the renderers, waiting while the queue is full */
+    BillRequest submit(Movie movie, int[] seats, long totalCents, String email) {
+        long bookingId;
+        try {
+            bookingId = bookingIds.next();
+        }
+        catch (IOException e) {
+            throw new RejectedExecutionException("no booking id could be reserved: " + e.getMessage(), e);
+        }
+        BillRequest bill = new BillRequest(bookingId, movie, seats, totalCents, email);
+        workers.execute(() -> render(bill));
+        submitted.increment();
+        return bill;
+    }
+
+    /** Stops taking bills and waits for the queued ones to be written, then for the emails already being sent */
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        workers.shutdown();
+        boolean written = workers.awaitTermination(timeout, unit);
+        return (outbox == null || outbox.shutdown(timeout, unit)) && written;
+    }
+
+    /** True when written bills are also emailed */
+    boolean emails() {
+        return outbox != null;
+    }
+
+    BillOutbox outbox() {
+        return outbox;
+    }
+
+    int queueDepth() {
+        return queue.size();
+    }
+
+    long submitted() {
+        return submitted.sum();
+    }
+
+    long rendered() {
+        return rendered.sum();
+    }
+
+    long failed() {
+        return failed.sum();
+    }
+
+    /** How many submits had to wait because the queue was full */
+    long blockedSubmits() {
+        return blockedSubmits.sum();
+    }
+
+    /** Average time spent inside the renderer */
+    double averageRenderMillis() {
+        long done = rendered.sum() + failed.sum();
+        return done == 0 ? 0 : renderNanos.sum() / 1e6 / done;
+    }
+
+    /** Average time from submit until the file is written, queueing included */
+    double averageLatencyMillis() {
+        long done = rendered.sum() + failed.sum();
+        return done == 0 ? 0 : latencyNanos.sum() / 1e6 / done;
+    }
+
+    double maxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    String metricsSummary() {
+        return String.format("bills submitted=%d rendered=%d failed=%d queued=%d blocked=%d avgRender=%.2fms avgLatency=%.2fms maxLatency=%.2fms",
+                submitted(), rendered(), failed(), queueDepth(), blockedSubmits(), averageRenderMillis(), averageLatencyMillis(), maxLatencyMillis());
+    }
+
+    private void render(BillRequest bill) {
+        long start = System.nanoTime();
+        boolean written = false;
+        try {
+            renderer.render(bill);
+            rendered.increment();
+            written = true;
+        }
+        catch (Exception e) {
+            failed.increment();
+            System.out.println("Error generating PDF " + bill.fileName + ": " + e.getMessage());
+        }
+        finally {
+            long end = System.nanoTime();
+            renderNanos.add(end - start);
+            Metrics.PDF_RENDER.record(end - start);
+            long latency = end - bill.submittedNanos;
+            latencyNanos.add(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+        if (written && outbox != null && !bill.email.isEmpty()) {
+            try {
+                outbox.add(bill);
+            }
+            catch (IOException e) {
+                System.out.println("Error queueing bill " + bill.fileName + " for " + bill.email + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void waitForRoom(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) throw new RejectedExecutionException("bill pipeline is shut down");
+        blockedSubmits.increment();
+        try {
+            executor.getQueue().put(task);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for the bill queue", e);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package kemora;
+
+/** Turns one bill request into a file */
+interface BillRenderer {
+    void render(BillRequest bill) throws Exception;
+}
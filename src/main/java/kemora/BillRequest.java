@@ -0,0 +1,29 @@
+package kemora;
+
+import java.nio.file.Paths;
+
+/** Everything a renderer needs for one bill, the file name is unique per booking */
+class BillRequest {
+    // -Dkemora.bill.dir puts the bills in their own folder instead of the working directory
+    static final String BILL_DIR = System.getProperty("kemora.bill.dir");
+
+    final long bookingId;
+    final Movie movie;
+    final int tickets;
+    final int[] seats;
+    final long totalCents;
+    final String email;
+    final String fileName;
+    final long submittedNanos = System.nanoTime();
+
+    BillRequest(long bookingId, Movie movie, int[] seats, long totalCents, String email) {
+        this.bookingId = bookingId;
+        this.movie = movie;
+        this.tickets = seats.length;
+        this.seats = seats;
+        this.totalCents = totalCents;
+        this.email = email;
+        String name = "Ticket_Bill_" + bookingId + ".pdf";
+        this.fileName = BILL_DIR == null ? name : Paths.get(BILL_DIR, name).toString();
+    }
+}
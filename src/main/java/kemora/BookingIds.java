@@ -0,0 +1,48 @@
+package kemora;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/** Booking ids that never repeat, not even after a restart: they are handed out in blocks */
+/** and the end of a block is forced to disk before its first id is used, a crash only skips the rest of the block */
+class BookingIds {
+    private static final long BLOCK = 1024;
+
+    private final Path file;
+    private long last;
+    private long reserved;
+
+    BookingIds(Path file) throws IOException {
+        this.file = file;
+        long stored = 0;
+        if (Files.exists(file)) {
+            try {
+                stored = Long.parseLong(Files.readString(file, StandardCharsets.US_ASCII).trim());
+            }
+            catch (NumberFormatException e) {
+                throw new IOException(file + " does not hold a booking id: " + e.getMessage());
+            }
+        }
+        // ids used to start at the clock, so starting no lower keeps clear of bills from before this file existed
+        last = Math.max(stored, System.currentTimeMillis());
+        reserved = last;
+    }
+
+    synchronized long next() throws IOException {
+        if (last == reserved) reserve(last + BLOCK);
+        return ++last;
+    }
+
+    /** Writes the new end through a temporary file and forces it, so a crash leaves the old end or the new one */
+    private void reserve(long end) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+            out.write(Long.toString(end).getBytes(StandardCharsets.US_ASCII));
+            out.getFD().sync();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        reserved = end;
+    }
+}
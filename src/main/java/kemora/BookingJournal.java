@@ -0,0 +1,424 @@
+package kemora;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+/** Append-only binary log of confirmed bookings, replayed on top of the CSV seat counts at startup */
+/** concurrent confirmations share one fsync: a single writer thread drains the queue, writes the batch and forces it once */
+/** every so often the closed segments are folded into one snapshot with a single record per showtime */
+/** records name the seats they sold, so a restart puts every booking back on the seats printed on its bill */
+class BookingJournal implements AutoCloseable {
+    private static final int MAGIC = 0x4B4D4A31; // "KMJ1"
+    private static final int MAX_BATCH = 1024;
+    private static final int READ_BLOCK = 1 << 20;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final long compactEvery;
+    private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(daemon("journal-compactor"));
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private FileChannel active;
+    private long activeFirstSeq;
+    private long lastSeq;
+    private long recordsSinceRoll;
+    private ByteBuffer batchBuffer = ByteBuffer.allocate(64 * 1024);
+
+    private BookingJournal(Path directory, long lastSeq, long compactEvery) throws IOException {
+        this.directory = directory;
+        this.lastSeq = lastSeq;
+        this.compactEvery = compactEvery;
+        openSegment();
+        this.writer = daemon("journal-writer").newThread(this::writeLoop);
+        this.writer.start();
+    }
+
+    /** Replays the snapshot and every segment in the directory onto the catalog, then opens a fresh segment */
+    static BookingJournal open(Path directory, ShowtimeCatalog catalog, long compactEvery) throws IOException {
+        Files.createDirectories(directory);
+        Recovery recovery = new Recovery(catalog);
+        long snapshotSeq = 0;
+        Path snapshot = latest(directory, SNAPSHOT_PREFIX);
+        if (snapshot != null) {
+            snapshotSeq = sequenceOf(snapshot, SNAPSHOT_PREFIX);
+            readFile(snapshot, 0, recovery);
+            recovery.lastSeq = Math.max(recovery.lastSeq, snapshotSeq);
+        }
+        for (Path segment : files(directory, SEGMENT_PREFIX)) {
+            readFile(segment, snapshotSeq, recovery);
+        }
+        if (recovery.applied + recovery.skipped > 0) {
+            System.out.println("Replayed " + recovery.applied + " journal records onto the seat counts"
+                    + (recovery.skipped > 0 ? " (" + recovery.skipped + " could not be applied)" : ""));
+        }
+        return new BookingJournal(directory, recovery.lastSeq, compactEvery);
+    }
+
+    /** Directory and compaction interval come from -Dkemora.journal.dir and -Dkemora.journal.compactEvery */
+    static BookingJournal openFromSystemProperties(ShowtimeCatalog catalog) throws IOException {
+        return open(Paths.get(System.getProperty("kemora.journal.dir", "booking-journal")), catalog,
+                Long.getLong("kemora.journal.compactEvery", 100_000));
+    }
+
+    /** Writes the booking and returns once it is on disk, possibly sharing the fsync with other cashiers */
+    long append(Movie movie, int[] seats) throws IOException {
+        if (!running) throw new IOException("booking journal is closed");
+        try {
+            return appendAsync(movie, seats).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for the journal", e);
+        }
+        catch (ExecutionException e) {
+            throw new IOException("booking could not be journaled: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /** Queues the booking and returns a future that completes with its sequence number once it is on disk */
+    CompletableFuture<Long> appendAsync(Movie movie, int[] seats) {
+        PendingRecord record = new PendingRecord(encode(movie.code(), movie.date(), movie.showtime(), seats.length, seats));
+        if (!running) {
+            record.done.completeExceptionally(new IOException("booking journal is closed"));
+            return record.done;
+        }
+        queue.add(record);
+        // close() may have let the writer finish between the check and the add, then nobody would write this record
+        if (!running && queue.remove(record)) record.done.completeExceptionally(new IOException("booking journal is closed"));
+        return record.done;
+    }
+
+    /** Flushes what is queued and stops the writer */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join();
+            // whatever slipped in after the writer's last look at the queue is refused, not left waiting
+            for (PendingRecord late; (late = queue.poll()) != null; ) {
+                late.done.completeExceptionally(new IOException("booking journal is closed"));
+            }
+            compactor.shutdown();
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        active.close();
+    }
+
+    private void writeLoop() {
+        List<PendingRecord> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingRecord first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                writeBatch(batch);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (RuntimeException | Error e) {
+                // the segment may hold part of the batch now, so no later record can be trusted behind it either
+                System.out.println("Error writing booking journal, refusing further bookings: " + e);
+                running = false;
+                IOException failure = new IOException("booking journal failed: " + e, e);
+                for (PendingRecord record : batch) record.done.completeExceptionally(failure);
+                for (PendingRecord late; (late = queue.poll()) != null; ) late.done.completeExceptionally(failure);
+                return;
+            }
+            finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingRecord> batch) {
+        long firstSeq = lastSeq + 1;
+        try {
+            batchBuffer.clear();
+            long seq = lastSeq;
+            for (PendingRecord record : batch) {
+                ensureRoom(record.body.length + 12);
+                writeRecord(batchBuffer, ++seq, record.body);
+            }
+            batchBuffer.flip();
+            while (batchBuffer.hasRemaining()) active.write(batchBuffer);
+            active.force(false);
+            lastSeq = seq;
+            for (PendingRecord record : batch) record.done.complete(firstSeq++);
+            recordsSinceRoll += batch.size();
+            if (recordsSinceRoll >= compactEvery) {
+                rollSegment();
+            }
+        }
+        catch (IOException e) {
+            for (PendingRecord record : batch) record.done.completeExceptionally(e);
+        }
+    }
+
+    /** Starts a new segment and folds everything before it into a snapshot in the background */
+    private void rollSegment() throws IOException {
+        active.close();
+        openSegment();
+        recordsSinceRoll = 0;
+        long upTo = lastSeq;
+        compactor.execute(() -> {
+            try {
+                compact(upTo);
+            }
+            catch (IOException e) {
+                System.out.println("Error compacting booking journal: " + e.getMessage());
+            }
+        });
+    }
+
+    private void openSegment() throws IOException {
+        activeFirstSeq = lastSeq + 1;
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%020d", activeFirstSeq) + SUFFIX);
+        active = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (active.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(4).putInt(0, MAGIC);
+            active.write(header);
+            active.force(false);
+        }
+    }
+
+    /** Writes one record per showtime holding every ticket and seat sold up to seq, then drops the files it replaces */
+    private void compact(long upTo) throws IOException {
+        Map<String, long[]> sold = new LinkedHashMap<>();
+        Map<String, BitSet> seatsSold = new HashMap<>();
+        Path oldSnapshot = latest(directory, SNAPSHOT_PREFIX);
+        long snapshotSeq = oldSnapshot == null ? 0 : sequenceOf(oldSnapshot, SNAPSHOT_PREFIX);
+        RecordVisitor sum = (seq, code, date, showtime, tickets, seats) -> {
+            if (seq > upTo) return;
+            String key = code + '\n' + date + '\n' + showtime;
+            sold.computeIfAbsent(key, k -> new long[1])[0] += tickets;
+            BitSet taken = seatsSold.computeIfAbsent(key, k -> new BitSet());
+            for (int seat : seats) taken.set(seat);
+        };
+        if (oldSnapshot != null) readFile(oldSnapshot, 0, sum);
+        List<Path> closed = new ArrayList<>();
+        for (Path segment : files(directory, SEGMENT_PREFIX)) {
+            if (sequenceOf(segment, SEGMENT_PREFIX) > upTo) continue;
+            readFile(segment, snapshotSeq, sum);
+            closed.add(segment);
+        }
+
+        Path target = directory.resolve(SNAPSHOT_PREFIX + String.format("%020d", upTo) + SUFFIX);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.putInt(MAGIC);
+            for (Map.Entry<String, long[]> entry : sold.entrySet()) {
+                String[] key = entry.getKey().split("\n", 3);
+                int[] seats = seatsSold.get(entry.getKey()).stream().toArray();
+                for (long left = entry.getValue()[0]; left > 0; left -= Integer.MAX_VALUE) {
+                    // the seats go with the first record, a showtime never has more seats than one record's tickets
+                    byte[] body = encode(key[0], key[1], key[2], (int) Math.min(left, Integer.MAX_VALUE), seats);
+                    seats = new int[0];
+                    if (buffer.remaining() < body.length + 12) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) out.write(buffer);
+                        buffer.clear();
+                    }
+                    writeRecord(buffer, upTo, body);
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) out.write(buffer);
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // the snapshot is durable now, so recovery no longer needs what it replaces
+        for (Path segment : closed) Files.deleteIfExists(segment);
+        if (oldSnapshot != null && !oldSnapshot.equals(target)) Files.deleteIfExists(oldSnapshot);
+    }
+
+    private void ensureRoom(int bytes) {
+        if (batchBuffer.remaining() >= bytes) return;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(batchBuffer.capacity() * 2, batchBuffer.position() + bytes));
+        batchBuffer.flip();
+        bigger.put(batchBuffer);
+        batchBuffer = bigger;
+    }
+
+    /** Record layout: body length, body (seq, tickets, code, date, showtime, seat numbers), CRC32 of seq and body */
+    /** a record written before seats were journaled simply ends after the showtime */
+    private static void writeRecord(ByteBuffer buffer, long seq, byte[] body) {
+        CRC32 crc = new CRC32();
+        int start = buffer.position();
+        buffer.putInt(body.length + 8);
+        buffer.putLong(seq);
+        buffer.put(body);
+        crc.update(buffer.array(), start + 4, body.length + 8);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private static byte[] encode(String code, String date, String showtime, int tickets, int[] seats) {
+        byte[] c = code.getBytes(StandardCharsets.UTF_8);
+        byte[] d = date.getBytes(StandardCharsets.UTF_8);
+        byte[] s = showtime.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(4 + 6 + c.length + d.length + s.length + 4 * seats.length);
+        body.putInt(tickets);
+        body.putShort((short) c.length).put(c);
+        body.putShort((short) d.length).put(d);
+        body.putShort((short) s.length).put(s);
+        for (int seat : seats) body.putInt(seat);
+        return body.array();
+    }
+
+    /** Reads every intact record with seq above afterSeq, a torn tail left by a crash is cut off */
+    /** the file is read a block at a time, so a segment of any size is replayed to its end before anything is cut */
+    private static void readFile(Path path, long afterSeq, RecordVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            BlockReader in = new BlockReader(channel);
+            if (!in.need(4) || in.buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a booking journal file");
+            }
+            CRC32 crc = new CRC32();
+            long valid = in.offset();
+            while (in.need(4)) {
+                int length = in.buffer.getInt();
+                // a length running past the end of the file is a torn write, not a reason to buffer gigabytes
+                if (length < 18 || length > size - in.offset() - 4 || !in.need(length + 4)) break;
+                ByteBuffer buffer = in.buffer;
+                crc.reset();
+                crc.update(buffer.array(), buffer.position(), length);
+                int end = buffer.position() + length;
+                long seq = buffer.getLong();
+                int tickets = buffer.getInt();
+                String code = readString(buffer);
+                String date = readString(buffer);
+                String showtime = readString(buffer);
+                if (buffer.position() > end || (end - buffer.position()) % 4 != 0) break;
+                int[] seats = new int[(end - buffer.position()) / 4];
+                for (int i = 0; i < seats.length; i++) seats[i] = buffer.getInt();
+                if (buffer.getInt() != (int) crc.getValue()) break;
+                valid = in.offset();
+                if (seq > afterSeq) visitor.record(seq, code, date, showtime, tickets, seats);
+            }
+            if (valid < size) {
+                System.out.println("Truncating torn journal tail in " + path.getFileName() + " at byte " + valid);
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        String value = new String(buffer.array(), buffer.position(), Math.min(length, buffer.remaining()), StandardCharsets.UTF_8);
+        buffer.position(Math.min(buffer.limit(), buffer.position() + length));
+        return value;
+    }
+
+    private static List<Path> files(Path directory, String prefix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + SUFFIX)) {
+            for (Path path : stream) files.add(path);
+        }
+        files.sort(Comparator.comparingLong(path -> sequenceOf(path, prefix)));
+        return files;
+    }
+
+    private static Path latest(Path directory, String prefix) throws IOException {
+        List<Path> files = files(directory, prefix);
+        return files.isEmpty() ? null : files.get(files.size() - 1);
+    }
+
+    private static long sequenceOf(Path path, String prefix) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** Reads a journal file front to back through one buffer, which only grows for a record larger than a block */
+    private static final class BlockReader {
+        private final FileChannel channel;
+        private long base;
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BLOCK).flip();
+
+        BlockReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /** File position of the next unread byte */
+        long offset() {
+            return base + buffer.position();
+        }
+
+        /** True once at least bytes unread bytes are buffered, false when the file ends first */
+        boolean need(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return true;
+            base += buffer.position();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(bytes).put(buffer);
+            }
+            else {
+                buffer.compact();
+            }
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) { }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+    }
+
+    private interface RecordVisitor {
+        void record(long seq, String code, String date, String showtime, int tickets, int[] seats);
+    }
+
+    /** Applies replayed bookings to the freshly loaded seat counts and seat maps */
+    private static final class Recovery implements RecordVisitor {
+        private final ShowtimeCatalog catalog;
+        long lastSeq;
+        long applied;
+        long skipped;
+
+        Recovery(ShowtimeCatalog catalog) {
+            this.catalog = catalog;
+        }
+
+        @Override
+        public void record(long seq, String code, String date, String showtime, int tickets, int[] seats) {
+            lastSeq = Math.max(lastSeq, seq);
+            Movie movie = catalog.find(code, date, showtime);
+            // the seats go back where the bill says, otherwise the centre seats of old bookings would be sold again
+            if (movie != null && movie.store.replay(movie.row, tickets, seats)) {
+                applied++;
+            }
+            else {
+                skipped++;
+            }
+        }
+    }
+
+    private static final class PendingRecord {
+        final byte[] body;
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+
+        PendingRecord(byte[] body) {
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package kemora;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Drives a running BookingServer with scripted sessions and reports throughput and latency percentiles */
+/** usage: java kemora.BookingLoadGenerator [port] [sessions] [concurrency] [movieCodes...] */
+public class BookingLoadGenerator {
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : BookingServer.DEFAULT_PORT;
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        String[] codes = args.length > 3 ? Arrays.copyOfRange(args, 3, args.length)
+                : new String[] {"M001", "M002", "M003", "M004", "M005", "M006", "M007"};
+
+        long[] latencies = new long[sessions];
+        AtomicInteger confirmed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(concurrency);
+        ExecutorService clients = BookingServer.newSessionExecutor();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            inFlight.acquire();
+            int session = i;
+            clients.execute(() -> {
+                try {
+                    long begin = System.nanoTime();
+                    String script = codes[session % codes.length] + "\n" + (1 + session % 3) + "\n1\nload" + session + "@kemora.test\n";
+                    if (runSession(port, script)) confirmed.incrementAndGet();
+                    else rejected.incrementAndGet();
+                    latencies[session] = System.nanoTime() - begin;
+                }
+                catch (IOException e) {
+                    failed.incrementAndGet();
+                    latencies[session] = -1;
+                }
+                finally {
+                    inFlight.release();
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - start;
+
+        long[] ok = Arrays.stream(latencies).filter(l -> l >= 0).sorted().toArray();
+        System.out.printf("sessions=%d confirmed=%d soldOut=%d failed=%d%n", sessions, confirmed.get(), rejected.get(), failed.get());
+        System.out.printf("throughput=%.1f sessions/s%n", sessions / (elapsed / 1e9));
+        if (ok.length > 0) {
+            System.out.printf("latency p50=%.2fms p99=%.2fms max=%.2fms%n",
+                    percentile(ok, 0.50) / 1e6, percentile(ok, 0.99) / 1e6, ok[ok.length - 1] / 1e6);
+        }
+    }
+
+    /** Sends the whole script up front and reads until the server closes the session */
+    private static boolean runSession(int port, String script) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.getOutputStream().write(script.getBytes(StandardCharsets.UTF_8));
+            socket.shutdownOutput();
+            String transcript = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            return transcript.contains("Booking Confirmed");
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,66 @@
+package kemora;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Serves many cashier and kiosk sessions from one process over a local TCP port */
+/** every connection runs the normal bookTickets flow on its own thread, all sessions share the catalog */
+class BookingServer {
+    static final int DEFAULT_PORT = 5050;
+
+    private final int port;
+    private final ExecutorService sessions = newSessionExecutor();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    BookingServer(int port) {
+        this.port = port;
+    }
+
+    /** Accepts connections until the process is stopped */
+    void serve() throws IOException {
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+            System.out.println("Booking server listening on " + server.getLocalSocketAddress());
+            while (true) {
+                Socket socket = server.accept();
+                sessions.execute(() -> runSession(socket));
+            }
+        }
+        finally {
+            sessions.shutdown();
+        }
+    }
+
+    int activeSessions() {
+        return activeSessions.get();
+    }
+
+    private void runSession(Socket socket) {
+        activeSessions.incrementAndGet();
+        try (socket;
+             Scanner in = new Scanner(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            MovieTicketReservationGroup_KeMora.bookTickets(in, out);
+        }
+        catch (IOException | NoSuchElementException e) {
+            // the client hung up mid-session, nothing left to answer
+        }
+        finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    /** One virtual thread per session when the JVM has them (21+), otherwise a cached pool of platform threads */
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
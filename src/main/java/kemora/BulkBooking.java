@@ -0,0 +1,215 @@
+package kemora;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/** Books a whole order file for group and corporate orders, writing one result line per order line */
+/** every line is checked with the cashier rules, then all lines for one showtime take their seats with a single reservation */
+class BulkBooking {
+    static final String ORDER_HEADER = "Movie Code,Date,Showtime,Tickets,Email";
+    static final String RESULT_HEADER = "Line,Status,Movie Code,Date,Showtime,Tickets,Seats,Total Cost,Message";
+
+    private final BookingJournal journal;
+    private final BillPipeline bills;
+    private final int batchSize;
+    private long booked;
+    private long rejected;
+
+    BulkBooking(BookingJournal journal, BillPipeline bills, int batchSize) {
+        this.journal = journal;
+        this.bills = bills;
+        this.batchSize = batchSize;
+    }
+
+    /** One order line and what happened to it */
+    static final class Order {
+        final int line;
+        final String[] fields;
+        Movie movie;
+        int tickets;
+        int[] seats;
+        String email = "";
+        String error;
+
+        Order(int line, String text) {
+            this.line = line;
+            this.fields = text.split(",", -1);
+            for (int i = 0; i < fields.length; i++) fields[i] = fields[i].trim();
+        }
+
+        String field(int index) {
+            return index < fields.length ? fields[index] : "";
+        }
+    }
+
+    /** Reads the orders batch by batch, so a file of any size is booked in bounded memory */
+    void process(Path orders, Path results) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(orders, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+            out.write(RESULT_HEADER);
+            out.newLine();
+            List<Order> batch = new ArrayList<>(batchSize);
+            String text;
+            int line = 0;
+            while ((text = in.readLine()) != null) {
+                line++;
+                if (text.isBlank() || (line == 1 && text.startsWith("Movie Code"))) continue;
+                batch.add(new Order(line, text));
+                if (batch.size() == batchSize) {
+                    book(batch);
+                    write(batch, out);
+                    batch.clear();
+                }
+            }
+            book(batch);
+            write(batch, out);
+        }
+    }
+
+    /** Validates the batch, reserves each showtime's lines together and journals one record per showtime */
+    void book(List<Order> batch) {
+        Map<Movie, List<Order>> byShowtime = new LinkedHashMap<>();
+        for (Order order : batch) {
+            validate(order);
+            if (order.error == null) byShowtime.computeIfAbsent(order.movie, k -> new ArrayList<>()).add(order);
+        }
+
+        List<List<Order>> saved = new ArrayList<>();
+        List<CompletableFuture<Long>> saves = new ArrayList<>();
+        for (Map.Entry<Movie, List<Order>> group : byShowtime.entrySet()) {
+            List<Order> taken = reserve(group.getKey(), group.getValue());
+            int tickets = 0;
+            for (Order order : taken) tickets += order.tickets;
+            if (tickets > 0) {
+                int[] seats = new int[tickets];
+                int filled = 0;
+                for (Order order : taken) {
+                    System.arraycopy(order.seats, 0, seats, filled, order.seats.length);
+                    filled += order.seats.length;
+                }
+                saved.add(taken);
+                saves.add(journal.appendAsync(group.getKey(), seats));
+            }
+        }
+
+        // the appends above went out together, so the journal writes them with one group commit
+        for (int i = 0; i < saves.size(); i++) {
+            try {
+                saves.get(i).get();
+            }
+            catch (InterruptedException | ExecutionException e) {
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                for (Order order : saved.get(i)) {
+                    ReservationEngine.release(order.movie, order.seats);
+                    order.seats = null;
+                    order.error = "the booking could not be saved (" + cause.getMessage() + ")";
+                }
+            }
+        }
+
+        for (Order order : batch) {
+            if (order.error != null) {
+                rejected++;
+                continue;
+            }
+            booked++;
+            if (order.email.isEmpty()) continue;
+            try {
+                bills.submit(order.movie, order.seats, Money.total(order.movie.priceCents(), order.tickets), order.email);
+            }
+            catch (RejectedExecutionException e) {
+                order.error = "booked, but the bill could not be queued (" + e.getMessage() + ")";
+            }
+        }
+    }
+
+    /** Checks a line the same way the cashier prompts are checked */
+    private static void validate(Order order) {
+        if (order.fields.length < 4) {
+            order.error = "expected " + ORDER_HEADER;
+            return;
+        }
+        ValidationResult<List<Movie>> code = MovieTicketReservationGroup_KeMora.checkMovieCode(order.field(0).toUpperCase());
+        if (!code.isValid()) {
+            order.error = code.error();
+            return;
+        }
+        ValidationResult<Movie> showtime = MovieTicketReservationGroup_KeMora.checkShowtime(code.value(), order.field(1), order.field(2));
+        if (!showtime.isValid()) {
+            order.error = showtime.error();
+            return;
+        }
+        order.movie = showtime.value();
+        ValidationResult<Integer> quantity = MovieTicketReservationGroup_KeMora.checkTicketQuantity(order.field(3), order.movie);
+        if (!quantity.isValid()) {
+            order.error = quantity.error();
+            return;
+        }
+        order.tickets = quantity.value();
+        if (!order.field(4).isEmpty()) {
+            ValidationResult<String> email = MovieTicketReservationGroup_KeMora.checkEmail(order.field(4));
+            if (!email.isValid()) {
+                order.error = email.error();
+                return;
+            }
+            order.email = email.value();
+        }
+    }
+
+    /** One reservation for the whole group, or line by line in file order when the showtime cannot take all of it */
+    private static List<Order> reserve(Movie movie, List<Order> group) {
+        int[] quantities = new int[group.size()];
+        for (int i = 0; i < quantities.length; i++) quantities[i] = group.get(i).tickets;
+        int[][] seats = ReservationEngine.tryReserveAll(movie, quantities);
+        if (seats != null) {
+            for (int i = 0; i < seats.length; i++) group.get(i).seats = seats[i];
+            return group;
+        }
+        List<Order> taken = new ArrayList<>();
+        for (Order order : group) {
+            order.seats = ReservationEngine.tryReserve(movie, order.tickets);
+            if (order.seats == null) {
+                order.error = ValidationResult.OVERBOOKED.error();
+            }
+            else {
+                taken.add(order);
+            }
+        }
+        return taken;
+    }
+
+    private static void write(List<Order> batch, BufferedWriter out) throws IOException {
+        StringBuilder row = new StringBuilder(128);
+        for (Order order : batch) {
+            row.setLength(0);
+            row.append(order.line).append(',').append(order.seats != null ? "BOOKED" : "REJECTED");
+            for (int i = 0; i < 4; i++) row.append(',').append(quote(order.field(i)));
+            row.append(',').append(order.seats != null ? SeatMap.labels(order.seats) : "");
+            row.append(',');
+            if (order.seats != null) Money.append(row, Money.total(order.movie.priceCents(), order.tickets));
+            row.append(',').append(order.error == null ? "" : quote(order.error));
+            out.write(row.toString());
+            out.newLine();
+        }
+    }
+
+    private static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    long booked() {
+        return booked;
+    }
+
+    long rejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,26 @@
+package kemora;
+
+/** Token bucket for one recipient domain, at most a quarter second's worth goes out at once after a quiet spell */
+/** so no one-second window sees more than 1.25 times the limit, only the dispatcher thread uses it */
+/** the bucket may go into debt: a message that finds it empty is given the time its token will have refilled */
+class DomainRateLimit {
+    private final double perNano;
+    private final double burst;
+    private double tokens;
+    private long refilledNanos;
+
+    DomainRateLimit(double perSecond) {
+        this.perNano = Math.max(perSecond, 0.001) / 1e9;
+        this.burst = Math.max(1, perSecond / 4);
+        this.tokens = burst;
+        this.refilledNanos = System.nanoTime();
+    }
+
+    /** Takes a token for one message and returns how long it has to wait for it, 0 to send now */
+    long reserve(long now) {
+        tokens = Math.min(burst, tokens + (now - refilledNanos) * perNano);
+        refilledNanos = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / perNano);
+    }
+}
@@ -0,0 +1,11 @@
+package kemora;
+
+// Custom Exceptions for the Movie Ticket Reservation System that asks from problem //
+// they only wrap a ValidationResult error for older callers, so no stack trace is filled in
+class InvalidMovieCodeException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidMovieCodeException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,10 @@
+package kemora;
+
+// the date or showtime picked has no showing of the movie, wraps its ValidationResult error like InvalidMovieCodeException
+class InvalidShowtimeException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidShowtimeException(String message) {
+        super(message, null, false, false);
+    }
+}
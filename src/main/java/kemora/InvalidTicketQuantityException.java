@@ -0,0 +1,10 @@
+package kemora;
+
+// the ticket quantity is not a positive number, wraps its ValidationResult error like InvalidMovieCodeException
+class InvalidTicketQuantityException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidTicketQuantityException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,92 @@
+package kemora;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Latency histogram with buckets that grow with the value, like HdrHistogram: 64 buckets per power of two, so about 1.6% error */
+/** recording is a single atomic bucket increment, readers sum the buckets while writers keep going */
+class LatencyHistogram {
+    private static final int SUB_BITS = 7;
+    private static final int HALF = 1 << (SUB_BITS - 1);
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * HALF + HALF;
+
+    final String name;
+    // how many calls each recording stands for, 1 unless the stage is sampled
+    final int weight;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram(String name, int weight) {
+        this.name = name;
+        this.weight = weight;
+    }
+
+    /** Records the time since Metrics.start() or a chosen Metrics.sample(), nothing for a 0 start */
+    void since(long startNanos) {
+        if (Metrics.ENABLED && startNanos != 0) record(System.nanoTime() - startNanos);
+    }
+
+    void record(long nanos) {
+        if (!Metrics.ENABLED) return;
+        long value = Math.max(0, nanos);
+        counts.getAndIncrement(bucket(value));
+        // the maximum only moves a few times, so reading it first saves a write on almost every call
+        long highest = max.get();
+        while (value > highest && !max.compareAndSet(highest, value)) highest = max.get();
+    }
+
+    /** Values below 128 get a bucket each, above that the top seven bits pick the bucket */
+    private static int bucket(long value) {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    /** Highest value that falls into the bucket */
+    private static long highest(int bucket) {
+        int shift = bucket < 2 * HALF ? 0 : bucket / HALF - 1;
+        long sub = bucket - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /** Calls seen, estimated from the samples for a sampled stage */
+    long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) count += counts.get(i);
+        return count * weight;
+    }
+
+    /** Time spent in the stage, each recording counted at the middle of its bucket */
+    long totalNanos() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count > 0) total += count * ((lowest(i) + highest(i)) / 2);
+        }
+        return total * weight;
+    }
+
+    private static long lowest(int bucket) {
+        return bucket == 0 ? 0 : highest(bucket - 1) + 1;
+    }
+
+    long maxNanos() {
+        return max.get();
+    }
+
+    /** The value at or below which the given share of the recordings fall, 0.99 for the 99th percentile */
+    long percentile(double share) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(share * count));
+        for (int i = 0; i < BUCKETS; i++) {
+            rank -= snapshot[i];
+            if (rank <= 0) return Math.min(highest(i), maxNanos());
+        }
+        return maxNanos();
+    }
+}
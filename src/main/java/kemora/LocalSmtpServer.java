@@ -0,0 +1,213 @@
+package kemora;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Small SMTP server on the loopback address for trying the bill outbox without a real mail host, it counts mail instead of keeping it */
+/** failures are injected at random per message: 451 (try later) or 550 (refused) at RCPT, or a connection dropped after the message was taken but before the 250 */
+/** usage: java kemora.LocalSmtpServer [port] [transientRate] [permanentRate] [dropRate], rates are 0..1 */
+public class LocalSmtpServer implements Closeable {
+    private final ServerSocket server;
+    private final ExecutorService sessions = BookingServer.newSessionExecutor();
+    private final Thread acceptor;
+    private final double transientRate;
+    private final double permanentRate;
+    private final double dropRate;
+
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final Set<String> messageIds = ConcurrentHashMap.newKeySet();
+    // accepted messages per recipient domain and second, to check the sender's rate limit
+    private final Map<String, Map<Long, AtomicLong>> perSecond = new ConcurrentHashMap<>();
+
+    LocalSmtpServer(int port, double transientRate, double permanentRate, double dropRate) throws IOException {
+        this.transientRate = transientRate;
+        this.permanentRate = permanentRate;
+        this.dropRate = dropRate;
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+        acceptor = new Thread(this::acceptLoop, "smtp-standin");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 2525;
+        double transientRate = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+        double permanentRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        double dropRate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+        LocalSmtpServer standIn = new LocalSmtpServer(port, transientRate, permanentRate, dropRate);
+        System.out.println("SMTP stand-in listening on port " + standIn.port() + ", run the app with -Dkemora.smtp.host=localhost -Dkemora.smtp.port=" + standIn.port());
+        while (true) {
+            try {
+                Thread.sleep(10_000);
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+            System.out.println(standIn.summary());
+        }
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    long connections() {
+        return connections.sum();
+    }
+
+    long accepted() {
+        return accepted.sum();
+    }
+
+    long deferred() {
+        return deferred.sum();
+    }
+
+    long refused() {
+        return refused.sum();
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    /** Accepted messages whose Message-ID had been accepted before */
+    long duplicates() {
+        return duplicates.sum();
+    }
+
+    /** Most messages accepted for one domain within one wall-clock second */
+    long peakPerSecond(String domain) {
+        Map<Long, AtomicLong> seconds = perSecond.get(domain);
+        long peak = 0;
+        if (seconds != null) for (AtomicLong count : seconds.values()) peak = Math.max(peak, count.get());
+        return peak;
+    }
+
+    Set<String> domains() {
+        return perSecond.keySet();
+    }
+
+    String summary() {
+        return String.format("smtp connections=%d accepted=%d deferred=%d refused=%d dropped=%d duplicates=%d",
+                connections(), accepted(), deferred(), refused(), dropped(), duplicates());
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        sessions.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                connections.increment();
+                sessions.execute(() -> session(socket));
+            }
+            catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void session(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+            reply(out, "220 kemora stand-in ready");
+            String recipient = null;
+            boolean hangUp = false;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String verb = line.length() < 4 ? line.toUpperCase(Locale.ROOT) : line.substring(0, 4).toUpperCase(Locale.ROOT);
+                switch (verb) {
+                    case "EHLO":
+                        reply(out, "250-kemora stand-in\r\n250 8BITMIME");
+                        break;
+                    case "HELO":
+                    case "NOOP":
+                        reply(out, "250 OK");
+                        break;
+                    case "MAIL":
+                        recipient = null;
+                        reply(out, "250 OK");
+                        break;
+                    case "RCPT": {
+                        double roll = ThreadLocalRandom.current().nextDouble();
+                        if (roll < permanentRate) {
+                            refused.increment();
+                            reply(out, "550 5.1.1 mailbox unavailable");
+                        }
+                        else if (roll < permanentRate + transientRate) {
+                            deferred.increment();
+                            reply(out, "451 4.3.0 try again later");
+                        }
+                        else {
+                            int open = line.indexOf('<');
+                            int close = line.lastIndexOf('>');
+                            recipient = open >= 0 && close > open ? line.substring(open + 1, close) : line.substring(line.indexOf(':') + 1).trim();
+                            hangUp = ThreadLocalRandom.current().nextDouble() < dropRate;
+                            reply(out, "250 OK");
+                        }
+                        break;
+                    }
+                    case "DATA": {
+                        if (recipient == null) {
+                            reply(out, "503 5.5.1 need RCPT first");
+                            break;
+                        }
+                        reply(out, "354 end with <CRLF>.<CRLF>");
+                        String messageId = null;
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            if (messageId == null && line.regionMatches(true, 0, "Message-ID:", 0, 11)) messageId = line.substring(11).trim();
+                        }
+                        if (line == null) return;
+                        accepted.increment();
+                        if (messageId != null && !messageIds.add(messageId)) duplicates.increment();
+                        String domain = recipient.substring(recipient.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+                        perSecond.computeIfAbsent(domain, d -> new ConcurrentHashMap<>())
+                                .computeIfAbsent(System.currentTimeMillis() / 1000, s -> new AtomicLong()).incrementAndGet();
+                        recipient = null;
+                        if (hangUp) {
+                            dropped.increment();
+                            return; // keeps the message but hangs up before answering, the client has to send it again
+                        }
+                        reply(out, "250 2.0.0 queued");
+                        break;
+                    }
+                    case "RSET":
+                        recipient = null;
+                        reply(out, "250 OK");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 bye");
+                        return;
+                    default:
+                        reply(out, "500 5.5.2 unknown command");
+                }
+            }
+        }
+        catch (IOException e) {
+            // the client hung up
+        }
+    }
+
+    private static void reply(Writer out, String text) throws IOException {
+        out.write(text);
+        out.write("\r\n");
+        out.flush();
+    }
+}
@@ -0,0 +1,47 @@
+package kemora;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters and histograms for every stage of a booking, read by MetricsEndpoint */
+/** -Dkemora.metrics=false makes ENABLED a constant false, the JIT then drops every timing and count */
+/** the sub-microsecond stages time one call in -Dkemora.metrics.sampleEvery (16), reading the clock costs as much as the lookup */
+final class Metrics {
+    static final boolean ENABLED = !"false".equals(System.getProperty("kemora.metrics"));
+    static final int SAMPLE_EVERY = Integer.highestOneBit(Math.max(1, Integer.getInteger("kemora.metrics.sampleEvery", 16)));
+
+    static final LatencyHistogram CSV_LOAD = new LatencyHistogram("csv_load", 1);
+    static final LatencyHistogram CODE_LOOKUP = new LatencyHistogram("code_lookup", SAMPLE_EVERY);
+    static final LatencyHistogram SHOWTIME_LOOKUP = new LatencyHistogram("showtime_lookup", SAMPLE_EVERY);
+    static final LatencyHistogram RESERVE = new LatencyHistogram("reserve", SAMPLE_EVERY);
+    static final LatencyHistogram PDF_RENDER = new LatencyHistogram("pdf_render", 1);
+    static final LatencyHistogram SEARCH = new LatencyHistogram("search", SAMPLE_EVERY);
+    // one SMTP batch, and a bill's whole way from the outbox to the mail server, retries included
+    static final LatencyHistogram MAIL_SEND = new LatencyHistogram("mail_send", 1);
+    static final LatencyHistogram BILL_EMAIL = new LatencyHistogram("bill_email", 1);
+    static final LatencyHistogram[] STAGES = {CSV_LOAD, CODE_LOOKUP, SHOWTIME_LOOKUP, RESERVE, PDF_RENDER, SEARCH, MAIL_SEND, BILL_EMAIL};
+
+    // compare-and-set attempts that lost to another cashier on the same showtime
+    static final LongAdder RESERVE_RETRIES = new LongAdder();
+    static final LongAdder RESERVE_SOLD_OUT = new LongAdder();
+    static final LongAdder TICKETS_SOLD = new LongAdder();
+    static final LongAdder TICKETS_RELEASED = new LongAdder();
+
+    private Metrics() {
+    }
+
+    /** Start time for LatencyHistogram.since, 0 without a clock read when metrics are off */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /** Start time for one call in SAMPLE_EVERY picked at random, 0 for the others */
+    static long sample() {
+        if (!ENABLED || (ThreadLocalRandom.current().nextInt() & (SAMPLE_EVERY - 1)) != 0) return 0;
+        return System.nanoTime();
+    }
+
+    static void count(LongAdder counter, long amount) {
+        if (ENABLED) counter.add(amount);
+    }
+}
@@ -0,0 +1,203 @@
+package kemora;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/** Serves the metrics as plain text on the loopback interface, in the Prometheus text format */
+/** /metrics has the stage histograms and counters, /showtimes?top=20 the showtimes selling fastest */
+/** /sales?by=language has seats sold, occupancy and revenue per movie, date, language or genre from the SalesAggregates */
+/** everything is read when asked for, so an endpoint nobody scrapes costs the booking flow nothing */
+class MetricsEndpoint {
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Supplier<ShowtimeCatalog> catalog;
+    private final SeatHolds holds;
+    private final BillPipeline bills;
+    private final HttpServer server;
+
+    MetricsEndpoint(int port, Supplier<ShowtimeCatalog> catalog, SeatHolds holds, BillPipeline bills) throws IOException {
+        this.catalog = catalog;
+        this.holds = holds;
+        this.bills = bills;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/metrics", exchange -> reply(exchange, metrics()));
+        server.createContext("/showtimes", exchange -> reply(exchange, showtimes(top(exchange.getRequestURI()))));
+        server.createContext("/sales", exchange -> reply(exchange, sales(dimension(exchange.getRequestURI()))));
+    }
+
+    /** Starts serving when -Dkemora.metrics.port is set and metrics are on, null otherwise */
+    static MetricsEndpoint fromSystemProperties(Supplier<ShowtimeCatalog> catalog, SeatHolds holds, BillPipeline bills) {
+        Integer port = Integer.getInteger("kemora.metrics.port");
+        if (port == null || !Metrics.ENABLED) return null;
+        try {
+            MetricsEndpoint endpoint = new MetricsEndpoint(port, catalog, holds, bills);
+            endpoint.server.start();
+            System.out.println("Metrics on http://localhost:" + endpoint.port() + "/metrics");
+            return endpoint;
+        }
+        catch (IOException e) {
+            System.out.println("Error starting metrics endpoint: " + e.getMessage());
+            return null;
+        }
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    String metrics() {
+        StringBuilder text = new StringBuilder(4096);
+        text.append("# TYPE kemora_stage_seconds summary\n");
+        for (LatencyHistogram stage : Metrics.STAGES) {
+            for (double percentile : PERCENTILES) {
+                line(text, "kemora_stage_seconds{stage=\"" + stage.name + "\",quantile=\"" + percentile + "\"}", stage.percentile(percentile) / 1e9);
+            }
+            line(text, "kemora_stage_seconds_max{stage=\"" + stage.name + "\"}", stage.maxNanos() / 1e9);
+            line(text, "kemora_stage_seconds_sum{stage=\"" + stage.name + "\"}", stage.totalNanos() / 1e9);
+            line(text, "kemora_stage_seconds_count{stage=\"" + stage.name + "\"}", stage.count());
+        }
+        line(text, "kemora_reserve_retries_total", Metrics.RESERVE_RETRIES.sum());
+        line(text, "kemora_reserve_sold_out_total", Metrics.RESERVE_SOLD_OUT.sum());
+        line(text, "kemora_tickets_sold_total", Metrics.TICKETS_SOLD.sum());
+        line(text, "kemora_tickets_released_total", Metrics.TICKETS_RELEASED.sum());
+        line(text, "kemora_stage_sample_every", Metrics.SAMPLE_EVERY);
+        if (holds != null) {
+            line(text, "kemora_holds_placed_total", holds.placed());
+            line(text, "kemora_holds_confirmed_total", holds.confirmed());
+            line(text, "kemora_holds_expired_total", holds.expired());
+            line(text, "kemora_holds_cancelled_total", holds.cancelled());
+            line(text, "kemora_holds_outstanding", holds.outstanding());
+        }
+        if (bills != null) {
+            line(text, "kemora_bills_submitted_total", bills.submitted());
+            line(text, "kemora_bills_rendered_total", bills.rendered());
+            line(text, "kemora_bills_failed_total", bills.failed());
+            line(text, "kemora_bills_queued", bills.queueDepth());
+            BillOutbox outbox = bills.outbox();
+            if (outbox != null) {
+                line(text, "kemora_mail_sent_total", outbox.sent());
+                line(text, "kemora_mail_retried_total", outbox.retried());
+                line(text, "kemora_mail_failed_total", outbox.failed());
+                line(text, "kemora_mail_rate_limited_total", outbox.rateLimited());
+                line(text, "kemora_mail_pending", outbox.pending());
+            }
+        }
+
+        ShowtimeCatalog showtimes = catalog.get();
+        SalesAggregates.Figures overall = showtimes.sales().overall();
+        line(text, "kemora_showtimes", showtimes.size());
+        line(text, "kemora_seats_total", overall.totalSeats);
+        line(text, "kemora_seats_sold", overall.seatsSold);
+        line(text, "kemora_seats_sold_since_load", overall.seatsSold - showtimes.sales().soldAtLoad());
+        line(text, "kemora_sell_through_ratio", overall.occupancy() / 100);
+        line(text, "kemora_revenue", overall.revenue());
+        return text.toString();
+    }
+
+    /** The showtimes with the highest share of their seats sold, as one CSV line each */
+    String showtimes(int top) {
+        ShowtimeStore store = catalog.get().store();
+        // a min-heap of the best rows so far keeps this at one pass over the store
+        PriorityQueue<long[]> best = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        for (int row = 0; row < store.size(); row++) {
+            int seats = store.totalSeats(row);
+            if (seats == 0) continue;
+            long perMillion = (seats - store.availableSeats(row)) * 1_000_000L / seats;
+            if (best.size() < top) {
+                best.add(new long[] {perMillion, row});
+            }
+            else if (top > 0 && perMillion > best.peek()[0]) {
+                best.poll();
+                best.add(new long[] {perMillion, row});
+            }
+        }
+        long[][] rows = best.toArray(new long[0][]);
+        Arrays.sort(rows, (a, b) -> Long.compare(b[0], a[0]));
+        StringBuilder text = new StringBuilder("Movie Code,Date,Showtime,Total Seats,Sold,Sold Since Load,Sell Through\n");
+        for (long[] entry : rows) {
+            int row = (int) entry[1];
+            int available = store.availableSeats(row);
+            text.append(store.code(row)).append(',').append(store.date(row)).append(',').append(store.showtime(row)).append(',')
+                    .append(store.totalSeats(row)).append(',').append(store.totalSeats(row) - available).append(',')
+                    .append(Math.max(0, store.loadedAvailableSeats(row) - available)).append(',')
+                    .append(String.format("%.1f%%", entry[0] / 1e4)).append('\n');
+        }
+        return text.toString();
+    }
+
+    /** Seats sold, occupancy and revenue for every value of one dimension, as one CSV line each */
+    String sales(SalesAggregates.Dimension dimension) {
+        String heading = dimension.name().charAt(0) + dimension.name().substring(1).toLowerCase(Locale.ROOT);
+        StringBuilder text = new StringBuilder(heading + ",Total Seats,Seats Sold,Occupancy,Revenue\n");
+        for (SalesAggregates.Figures figures : catalog.get().sales().all(dimension)) {
+            text.append(figures.value).append(',').append(figures.totalSeats).append(',').append(figures.seatsSold).append(',')
+                    .append(String.format("%.1f%%", figures.occupancy())).append(',')
+                    .append(Money.format(figures.revenueCents)).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static SalesAggregates.Dimension dimension(URI uri) {
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String part : query.split("&")) {
+                if (part.startsWith("by=")) {
+                    for (SalesAggregates.Dimension dimension : SalesAggregates.Dimension.values()) {
+                        if (dimension.name().equalsIgnoreCase(part.substring(3))) return dimension;
+                    }
+                }
+            }
+        }
+        return SalesAggregates.Dimension.MOVIE;
+    }
+
+    private static int top(URI uri) {
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String part : query.split("&")) {
+                if (part.startsWith("top=")) {
+                    long top = ValidationResult.parseInt(part.substring(4));
+                    if (top > 0) return (int) Math.min(top, 10_000);
+                }
+            }
+        }
+        return 20;
+    }
+
+    private static void line(StringBuilder text, String name, double value) {
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void line(StringBuilder text, String name, long value) {
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void reply(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
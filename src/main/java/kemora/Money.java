@@ -0,0 +1,149 @@
+package kemora;
+
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/** Money as long minor units (cents), parsed straight from the digits and never held in a double, so 3 x 12.50 is exactly 37.50 */
+/** totals, taxes and discounts are long arithmetic, an amount that falls between two cents is rounded by -Dkemora.money.rounding */
+/** -Dkemora.tax.percent and -Dkemora.discount.percent (both 0 unless set) apply to every booking total, the discount first */
+final class Money {
+    private static final int MAX_DIGITS = 18;
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    static final RoundingMode ROUNDING = rounding("kemora.money.rounding", RoundingMode.HALF_UP);
+    // rates are in basis points, hundredths of a percent, 8.5% is 850
+    static final long TAX_BASIS_POINTS = rate("kemora.tax.percent");
+    static final long DISCOUNT_BASIS_POINTS = rate("kemora.discount.percent");
+
+    private Money() {
+    }
+
+    /** Cents of a non-negative amount such as 12, 12.5 or 12.50, digits after the cents are rounded, -1 when it is not an amount */
+    static long parse(byte[] buf, int from, int to) {
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = from; i < to; i++) {
+            byte b = buf[i];
+            if (b == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || ++digits > MAX_DIGITS) return -1;
+            mantissa = mantissa * 10 + digit;
+            if (scale >= 0) scale++;
+        }
+        return digits == 0 ? -1 : cents(mantissa, Math.max(0, scale));
+    }
+
+    /** Same as the byte form for text, throws NumberFormatException when it is not an amount */
+    static long parse(String text) {
+        String trimmed = text.trim();
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || ++digits > MAX_DIGITS) throw new NumberFormatException("not an amount: '" + text + "'");
+            mantissa = mantissa * 10 + (c - '0');
+            if (scale >= 0) scale++;
+        }
+        long cents = digits == 0 ? -1 : cents(mantissa, Math.max(0, scale));
+        if (cents < 0) throw new NumberFormatException("not an amount: '" + text + "'");
+        return cents;
+    }
+
+    /** Brings a decimal with scale digits after the point to exactly two, -1 when that many cents do not fit a long */
+    private static long cents(long mantissa, int scale) {
+        if (scale == 2) return mantissa;
+        // eighteen whole digits are fine as a mantissa but not once the cents are added
+        if (scale < 2) return mantissa > Long.MAX_VALUE / POWERS_OF_TEN[2 - scale] ? -1 : mantissa * POWERS_OF_TEN[2 - scale];
+        return divide(mantissa, POWERS_OF_TEN[scale - 2], ROUNDING);
+    }
+
+    /** Price of a number of tickets after the configured discount and tax */
+    static long total(long unitCents, int tickets) {
+        long subtotal = Math.multiplyExact(unitCents, tickets);
+        long discounted = subtotal - percentOf(subtotal, DISCOUNT_BASIS_POINTS);
+        return discounted + percentOf(discounted, TAX_BASIS_POINTS);
+    }
+
+    /** The given share of an amount, in basis points, rounded to a cent */
+    static long percentOf(long cents, long basisPoints) {
+        if (basisPoints == 0) return 0;
+        return divide(Math.multiplyExact(cents, basisPoints), 10_000, ROUNDING);
+    }
+
+    /** Integer division rounded the way BigDecimal.divide would round it, without making one */
+    static long divide(long dividend, long divisor, RoundingMode mode) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) return quotient;
+        // the exact result lies between quotient and quotient + sign
+        int sign = (dividend < 0) == (divisor < 0) ? 1 : -1;
+        boolean away;
+        switch (mode) {
+            case DOWN: away = false; break;
+            case UP: away = true; break;
+            case FLOOR: away = sign < 0; break;
+            case CEILING: away = sign > 0; break;
+            case UNNECESSARY: throw new ArithmeticException("rounding needed for " + dividend + " / " + divisor);
+            default:
+                int half = Long.compare(Math.abs(remainder), Math.abs(divisor) - Math.abs(remainder));
+                if (mode == RoundingMode.HALF_UP) away = half >= 0;
+                else if (mode == RoundingMode.HALF_DOWN) away = half > 0;
+                else away = half > 0 || (half == 0 && (quotient & 1) != 0);
+        }
+        return away ? quotient + sign : quotient;
+    }
+
+    /** 37.50 for 3750, always two digits after the point */
+    static String format(long cents) {
+        return append(new StringBuilder(24), cents).toString();
+    }
+
+    static StringBuilder append(StringBuilder text, long cents) {
+        if (cents < 0) text.append('-');
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        return text.append(abs / 100).append('.').append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+    }
+
+    private static RoundingMode rounding(String property, RoundingMode fallback) {
+        String value = System.getProperty(property);
+        if (value == null) return fallback;
+        try {
+            return RoundingMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("Error reading -D" + property + ", using " + fallback + ": " + e.getMessage());
+            return fallback;
+        }
+    }
+
+    /** A percentage such as 8.5 as basis points, the same digits read as cents */
+    private static long rate(String property) {
+        String value = System.getProperty(property);
+        if (value == null) return 0;
+        try {
+            String percent = value.trim();
+            long basisPoints = parse(percent.endsWith("%") ? percent.substring(0, percent.length() - 1) : percent);
+            if (basisPoints > 10_000) throw new NumberFormatException("more than 100%: " + value);
+            return basisPoints;
+        }
+        catch (NumberFormatException | ArithmeticException e) {
+            System.out.println("Error reading -D" + property + ", using 0: " + e.getMessage());
+            return 0;
+        }
+    }
+}
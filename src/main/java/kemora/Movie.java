@@ -0,0 +1,39 @@
+package kemora;
+
+// Movie class for the movie details, a light view of one showtime row in the ShowtimeStore
+class Movie {
+    final ShowtimeStore store;
+    final int row;
+
+    public Movie(ShowtimeStore store, int row) {
+        this.store = store;
+        this.row = row;
+    }
+
+    String code() { return store.code(row); }
+    String name() { return store.name(row); }
+    String date() { return store.date(row); }
+    String showtime() { return store.showtime(row); }
+    String language() { return store.language(row); }
+    String genre() { return store.genre(row); }
+    int totalSeats() { return store.totalSeats(row); }
+    int availableSeats() { return store.availableSeats(row); } // only changed through ReservationEngine
+    long priceCents() { return store.priceCents(row); } // see Money
+
+    /** The same showtime in the newest loaded schedule, null if a reload dropped it */
+    Movie current() {
+        Movie movie = this;
+        while (movie != null && movie.store.isRetired(movie.row)) movie = movie.store.forwarded(movie.row);
+        return movie;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Movie && ((Movie) other).store == store && ((Movie) other).row == row;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(store) * 31 + row;
+    }
+}
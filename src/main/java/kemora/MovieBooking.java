@@ -180,54 +180,66 @@
 //         }
 //     }
 // }
+package kemora;
+
 import java.io.*;
 import java.util.*;
+import java.util.List;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
 
-class InvalidMovieCodeException extends Exception {
-    public InvalidMovieCodeException(String message) {
-        super(message);
+public class MovieBooking {
+    // kept nested so this older variant can be compiled next to MovieTicketReservationGroup_KeMora
+    static class InvalidMovieCodeException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public InvalidMovieCodeException(String message) {
+            super(message);
+        }
     }
-}
 
-class InvalidShowtimeException extends Exception {
-    public InvalidShowtimeException(String message) {
-        super(message);
+    static class InvalidShowtimeException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public InvalidShowtimeException(String message) {
+            super(message);
+        }
     }
-}
 
-class InvalidTicketQuantityException extends Exception {
-    public InvalidTicketQuantityException(String message) {
-        super(message);
+    static class InvalidTicketQuantityException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public InvalidTicketQuantityException(String message) {
+            super(message);
+        }
     }
-}
 
-class OverbookingException extends Exception {
-    public OverbookingException(String message) {
-        super(message);
+    static class OverbookingException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public OverbookingException(String message) {
+            super(message);
+        }
     }
-}
 
-class Movie {
-    String code, name, date, showtime, language, genre;
-    int totalSeats, availableSeats;
-    double ticketPrice;
-
-    public Movie(String code, String name, String date, String showtime, int totalSeats, int availableSeats, double ticketPrice, String language, String genre) {
-        this.code = code;
-        this.name = name;
-        this.date = date;
-        this.showtime = showtime;
-        this.totalSeats = totalSeats;
-        this.availableSeats = availableSeats;
-        this.ticketPrice = ticketPrice;
-        this.language = language;
-        this.genre = genre;
+    static class Movie {
+        String code, name, date, showtime, language, genre;
+        int totalSeats, availableSeats;
+        double ticketPrice;
+
+        public Movie(String code, String name, String date, String showtime, int totalSeats, int availableSeats, double ticketPrice, String language, String genre) {
+            this.code = code;
+            this.name = name;
+            this.date = date;
+            this.showtime = showtime;
+            this.totalSeats = totalSeats;
+            this.availableSeats = availableSeats;
+            this.ticketPrice = ticketPrice;
+            this.language = language;
+            this.genre = genre;
+        }
     }
-}
 
-public class MovieBooking {
     private static final List<Movie> movieList = new ArrayList<>();
     private static final Scanner sc = new Scanner(System.in);
 
@@ -0,0 +1,440 @@
+package kemora;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import com.itextpdf.text.*;
+import com.itextpdf.text.pdf.*;
+/** cashier enters the movie code, if it valid then the date, if valid then showtime */
+/** if any of them are not valid, then the corresponding exception willr raise */
+/** if the ticket quantity is not valid, then the corresponding exception will raise */
+/** if the ticket quantity is more than the available seats, then the corresponding exception will raise */
+/** if all the inputs are valid, then the ticket will be booked and the pdf bill will be generated */
+/** if the pdf bill is generated, then the email will be sent to the user through the BillOutbox */
+//used itextpdf to generate the pdf*/
+public class MovieTicketReservationGroup_KeMora {
+    // swapped whole when the CSV is reloaded, a session keeps the showtimes it already looked up
+    private static volatile ShowtimeCatalog catalog = ShowtimeCatalog.EMPTY;
+    private static BookingJournal journal;
+    private static final Scanner sc = new Scanner(System.in);
+    // made on first use, so --shard can give each shard its own bill folder before -Dkemora.bill.dir is read
+    private static volatile BillPipeline bills;
+    private static final SeatHolds holds = SeatHolds.fromSystemProperties();
+    private static final String DATASET = "Movie Reservation Dataset.csv";
+    // below this size splitting the file costs more than it saves
+    private static final long PARALLEL_LOAD_THRESHOLD = 16L << 20;
+    // set in --shard mode, the CSV is then cut down to the codes this process owns
+    private static ShardRing shardRing;
+    private static int shardIndex;
+
+    public static void main(String[] args) {
+        boolean shard = args.length > 2 && args[0].equals("--shard");
+        if (shard) {
+            shardIndex = Integer.parseInt(args[1]);
+            shardRing = new ShardRing(Integer.parseInt(args[2]));
+            // shards on one machine must not share a journal
+            if (System.getProperty("kemora.journal.dir") == null) {
+                System.setProperty("kemora.journal.dir", "booking-journal/shard-" + shardIndex);
+            }
+            // nor a bill folder, every shard numbers its bills on its own
+            if (System.getProperty("kemora.bill.dir") == null) {
+                System.setProperty("kemora.bill.dir", "bills/shard-" + shardIndex);
+            }
+            // or an outbox, two shards sending from one folder would mail the same bills twice
+            if (System.getProperty("kemora.mail.dir") == null) {
+                System.setProperty("kemora.mail.dir", "bill-outbox/shard-" + shardIndex);
+            }
+        }
+        loadMoviesFromCSV(DATASET);
+        if (journal == null) return;
+        // -Dkemora.reload=false turns off picking up schedule changes while running
+        if (!"false".equals(System.getProperty("kemora.reload"))) {
+            new ShowtimeReloader(Paths.get(DATASET), () -> catalog, loaded -> catalog = loaded, System.out,
+                    Long.getLong("kemora.reload.quietMillis", 500)).start();
+        }
+        // -Dkemora.metrics.port=9464 serves /metrics, /showtimes and /sales on localhost
+        MetricsEndpoint metrics = MetricsEndpoint.fromSystemProperties(() -> catalog, holds, bills());
+        if (shard) {
+            // --shard index count [port], shard i listens on 6060 + i by default
+            int port = args.length > 3 ? Integer.parseInt(args[3]) : ShardNode.BASE_PORT + shardIndex;
+            try {
+                new ShardNode(shardIndex, shardRing, () -> catalog, journal, bills()).serve(port);
+            }
+            catch (IOException e) {
+                System.out.println("Error starting shard: " + e.getMessage());
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : BookingServer.DEFAULT_PORT;
+            try {
+                new BookingServer(port).serve();
+            }
+            catch (IOException e) {
+                System.out.println("Error starting booking server: " + e.getMessage());
+            }
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--bulk")) {
+            bookOrderFile(args);
+        }
+        else if (args.length > 0 && args[0].equals("--search")) {
+            searchShowtimes(args, System.out);
+        }
+        else {
+            bookTickets(sc, System.out);
+        }
+        try {
+            // let the queued bill finish before the JVM exits, bills not emailed yet stay in the outbox for the next start
+            bills().shutdown(1, TimeUnit.MINUTES);
+            holds.stop();
+            if (metrics != null) metrics.stop();
+            journal.close();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e) {
+            System.out.println("Error closing booking journal: " + e.getMessage());
+        }
+    }
+    /** Books every line of an order file, usage: --bulk orders.csv [results.csv] */
+    private static void bookOrderFile(String[] args) {
+        Path orders = Paths.get(args[1]);
+        Path results = args.length > 2 ? Paths.get(args[2]) : orders.resolveSibling(orders.getFileName() + ".results.csv");
+        BulkBooking bulk = new BulkBooking(journal, bills(), Integer.getInteger("kemora.bulk.batch", 1000));
+        try {
+            bulk.process(orders, results);
+            System.out.println("Bulk order: " + bulk.booked() + " lines booked, " + bulk.rejected() + " rejected, results in " + results);
+        }
+        catch (IOException e) {
+            System.out.println("Error processing bulk order: " + e.getMessage());
+        }
+    }
+    /** Prints one page of kiosk search results, usage: --search [language=..] [genre=..] [date=yyyy-MM-dd] [to=yyyy-MM-dd] [from=price] [under=price] [seats=n] [page=cursor] [limit=n] */
+    static void searchShowtimes(String[] args, PrintStream out) {
+        ShowtimeQuery query;
+        int cursor = 0;
+        int limit = 20;
+        try {
+            List<String> filters = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].startsWith("page=")) cursor = Integer.parseInt(args[i].substring(5));
+                else if (args[i].startsWith("limit=")) limit = Integer.parseInt(args[i].substring(6));
+                else filters.add(args[i]);
+            }
+            if (limit < 1) throw new IllegalArgumentException("limit must be at least 1 but was " + limit);
+            query = ShowtimeQuery.parse(filters);
+        }
+        catch (RuntimeException e) {
+            out.println("Error in search filters: " + e.getMessage());
+            return;
+        }
+        ShowtimeSearch.Page page = catalog.search().search(query, cursor, limit);
+        for (Movie movie : page.showtimes) {
+            out.println(movie.code() + " | " + movie.name() + " | " + movie.date() + " " + movie.showtime() + " | "
+                    + movie.language() + " " + movie.genre() + " | " + Money.format(movie.priceCents()) + " | " + movie.availableSeats() + " seats left");
+        }
+        out.println(page.showtimes.isEmpty() ? "No showtimes match." : page.next < 0 ? "End of results." : "More results: page=" + page.next);
+    }
+    /** This method will load and read the csv file from the computer, bad rows are skipped and reported by line */
+    private static void loadMoviesFromCSV(String filename) {
+        ShowtimeStore store;
+        try {
+            store = loadShowtimes(Paths.get(filename), System.out);
+        } 
+        catch (IOException e) {
+            System.out.println("Error loading movies: " + e.getMessage());
+            store = new ShowtimeStore.Builder().build();
+        }
+        catalog = ShowtimeCatalog.build(store);
+        try {
+            // sales are not in the CSV, so put the journaled bookings back on top of it
+            journal = BookingJournal.openFromSystemProperties(catalog);
+        }
+        catch (IOException e) {
+            System.out.println("Error opening booking journal: " + e.getMessage());
+        }
+    }
+
+    /** The schedule from its binary snapshot while that still matches the CSV, otherwise parsed from the CSV */
+    static ShowtimeStore loadShowtimes(Path path, PrintStream out) throws IOException {
+        ShowtimeSnapshot snapshot = ShowtimeSnapshot.forDataset(path, shardRing, shardIndex);
+        ShowtimeStore store = snapshot == null ? null : snapshot.load(out);
+        return store != null ? store : parseShowtimes(path, out);
+    }
+
+    /** Parses the CSV and snapshots the rows for the next start, a snapshot that cannot be written only costs that start */
+    static ShowtimeStore parseShowtimes(Path path, PrintStream out) throws IOException {
+        ShowtimeSnapshot snapshot = ShowtimeSnapshot.forDataset(path, shardRing, shardIndex);
+        long[] stamp = snapshot == null ? null : snapshot.stamp();
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        readShowtimes(path, store, out);
+        if (snapshot != null) snapshot.write(store, stamp, out);
+        return store.build();
+    }
+
+    /** Parses the CSV into the sink, in parallel for big files, and prints the rows it had to skip */
+    static void readShowtimes(Path path, ShowtimeRowSink sink, PrintStream out) throws IOException {
+        long started = Metrics.start();
+        if (shardRing != null) sink = ShardNode.owned(shardRing, shardIndex, sink);
+        ShowtimeCsvParser parser = new ShowtimeCsvParser();
+        int threads = Integer.getInteger("kemora.load.threads", Runtime.getRuntime().availableProcessors());
+        if (threads > 1 && Files.size(path) >= PARALLEL_LOAD_THRESHOLD) {
+            parser.parseFileParallel(path, threads, sink);
+        }
+        else {
+            parser.parseFile(path, sink);
+        }
+        Metrics.CSV_LOAD.since(started);
+        for (String error : parser.errors()) {
+            out.println("Skipped " + error);
+        }
+        if (parser.badRows() > parser.errors().size()) {
+            out.println("Skipped " + parser.badRows() + " bad rows in total");
+        }
+    }
+
+    /** The bill pipeline, -Dkemora.bill.plain=true switches back to building every bill from scratch */
+    /** and -Dkemora.smtp.host turns on emailing the rendered bills through the outbox */
+    private static BillPipeline bills() {
+        BillPipeline pipeline = bills;
+        if (pipeline != null) return pipeline;
+        synchronized (MovieTicketReservationGroup_KeMora.class) {
+            if (bills == null) {
+                bills = BillPipeline.fromSystemProperties(Boolean.getBoolean("kemora.bill.plain")
+                        ? MovieTicketReservationGroup_KeMora::generatePDFBill : new BillTemplateRenderer(), BillOutbox.fromSystemProperties());
+            }
+            return bills;
+        }
+    }
+
+    /** Swaps in an already loaded catalog and journal, for benchmarks and tools that skip main */
+    static void useCatalog(ShowtimeCatalog loaded, BookingJournal bookingJournal) {
+        catalog = loaded;
+        journal = bookingJournal;
+    }
+    /** This method will book the tickets if it is valid, reading from and writing to one cashier session */
+    static void bookTickets(Scanner in, PrintStream out) {
+        List<Movie> selectedMovies = null;
+        Movie selectedMovie = null;
+        SeatHold hold = null;
+
+        while (selectedMovies == null) {
+            out.print("Enter The Movie Code : ");
+            ValidationResult<List<Movie>> code = checkMovieCode(in.nextLine().trim().toUpperCase());
+            if (code.isValid()) {
+                selectedMovies = code.value();
+            }
+            else {
+                out.println("Error : " + code.error());
+            }
+        }
+
+        // Select Showtimes for the Movie
+        while (selectedMovie == null) {
+            out.println("Available Showtimes:");
+            for (int i = 0; i < selectedMovies.size(); i++) {
+                out.println((i + 1) + ". " + selectedMovies.get(i).showtime());
+            }
+            out.print("Select Showtime (Enter Number): ");
+            ValidationResult<Movie> choice = checkShowtime(in.nextLine().trim(), selectedMovies);
+            if (choice.isValid()) {
+                selectedMovie = choice.value();
+            }
+            else {
+                out.println("Error: " + choice.error());
+            }
+        }
+
+        // Get Valid Ticket Quantity
+        while (true) {
+            out.print("Enter Number of Tickets: ");
+            ValidationResult<Integer> quantity = checkTicketQuantity(in.nextLine().trim(), selectedMovie);
+            if (!quantity.isValid()) {
+                out.println("Error: " + quantity.error());
+            }
+            else if ((hold = holds.hold(selectedMovie, quantity.value())) == null) {
+                out.println("Error: " + ValidationResult.OVERBOOKED.error());
+            }
+            else {
+                break;
+            }
+        }
+
+        try {
+            confirmBooking(hold, in, out);
+        }
+        finally {
+            // a session that drops out half way gives its seats back now instead of when the hold runs out
+            hold.cancel();
+        }
+    }
+    /** Checks if the movie code is valid or not, using the catalog index instead of scanning every showtime */
+    static ValidationResult<List<Movie>> checkMovieCode(String code) {
+        long started = Metrics.sample();
+        List<Movie> matchingMovies = catalog.showtimes(code);
+        Metrics.CODE_LOOKUP.since(started);
+        if (matchingMovies.isEmpty()) return ValidationResult.UNKNOWN_CODE.as();
+        return ValidationResult.ok(matchingMovies);
+    }
+
+    /** Turns the 1-based menu number the cashier typed into one of the listed showtimes */
+    static ValidationResult<Movie> checkShowtime(String input, List<Movie> showtimes) {
+        long choice = ValidationResult.parseInt(input);
+        if (choice < 1 || choice > showtimes.size()) return ValidationResult.BAD_SHOWTIME.as();
+        return ValidationResult.ok(showtimes.get((int) choice - 1));
+    }
+
+    /** Finds the listed showtime with this date and name, for order files that cannot use menu numbers */
+    static ValidationResult<Movie> checkShowtime(List<Movie> showtimes, String date, String showtime) {
+        long started = Metrics.sample();
+        for (Movie movie : showtimes) {
+            if (movie.date().equals(date) && movie.showtime().equalsIgnoreCase(showtime)) {
+                Metrics.SHOWTIME_LOOKUP.since(started);
+                return ValidationResult.ok(movie);
+            }
+        }
+        Metrics.SHOWTIME_LOOKUP.since(started);
+        return ValidationResult.BAD_SHOWTIME.as();
+    }
+
+    /** This method will checks if teh ticket quantity is valid or not, without throwing for bad input */
+    static ValidationResult<Integer> checkTicketQuantity(String input, Movie movie) {
+        long tickets = ValidationResult.parseInt(input);
+        if (tickets == ValidationResult.NOT_A_NUMBER_VALUE) return ValidationResult.NOT_A_NUMBER.as();
+        if (tickets <= 0) return ValidationResult.NOT_POSITIVE.as();
+        if (tickets > movie.availableSeats()) return ValidationResult.OVERBOOKED.as();
+        return ValidationResult.ok((int) tickets);
+    }
+
+    /** Checks the address the bill is emailed to: a dotted local part, an @ and a domain of at least two labels */
+    /** plain ASCII addresses only, the domain comes back lower case so one domain shares one rate limit in the outbox */
+    static ValidationResult<String> checkEmail(String input) {
+        String email = input.trim();
+        int at = email.lastIndexOf('@');
+        int length = email.length();
+        if (at < 1 || at > 64 || length > 254 || at == length - 1) return ValidationResult.BAD_EMAIL.as();
+        char previous = '.';
+        for (int i = 0; i < at; i++) {
+            char c = email.charAt(i);
+            if (c == '.' ? previous == '.' : !isAtext(c)) return ValidationResult.BAD_EMAIL.as();
+            previous = c;
+        }
+        if (previous == '.') return ValidationResult.BAD_EMAIL.as();
+        int labels = 0;
+        boolean lettersInLast = false;
+        for (int start = at + 1, i = start; i <= length; i++) {
+            if (i == length || email.charAt(i) == '.') {
+                if (i == start || i - start > 63 || email.charAt(start) == '-' || email.charAt(i - 1) == '-') return ValidationResult.BAD_EMAIL.as();
+                labels++;
+                lettersInLast = false;
+                for (int j = start; j < i && !lettersInLast; j++) lettersInLast = !Character.isDigit(email.charAt(j));
+                start = i + 1;
+            }
+            else if (!isLetterOrDigit(email.charAt(i)) && email.charAt(i) != '-') {
+                return ValidationResult.BAD_EMAIL.as();
+            }
+        }
+        // a numeric top-level label is an IP address, which the outbox cannot rate limit by domain
+        if (labels < 2 || !lettersInLast) return ValidationResult.BAD_EMAIL.as();
+        return ValidationResult.ok(email.substring(0, at + 1) + email.substring(at + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    /** Characters allowed in the local part besides the dots between them (RFC 5322 atext) */
+    private static boolean isAtext(char c) {
+        return isLetterOrDigit(c) || "!#$%&'*+/=?^_`{|}~-".indexOf(c) >= 0;
+    }
+
+    /** Exception form of checkMovieCode, kept for older callers */
+    static List<Movie> validateMovieCode(String code) throws InvalidMovieCodeException {
+        ValidationResult<List<Movie>> result = checkMovieCode(code);
+        if (!result.isValid()) throw new InvalidMovieCodeException(result.error());
+        return result.value();
+    }
+
+    /** Exception form of checkTicketQuantity, kept for older callers */
+    static int validateTicketQuantity(String input, Movie movie) throws InvalidTicketQuantityException, OverbookingException {
+        ValidationResult<Integer> result = checkTicketQuantity(input, movie);
+        if ((Object) result == ValidationResult.OVERBOOKED) throw new OverbookingException(result.error());
+        if (!result.isValid()) throw new InvalidTicketQuantityException(result.error());
+        return result.value();
+    }
+
+    /** Shows the held seats, asks for the email and only then turns the hold into a journaled sale */
+    private static void confirmBooking(SeatHold hold, Scanner in, PrintStream out) {
+        Movie movie = hold.movie;
+        int tickets = hold.seats.length;
+        long totalCents = Money.total(movie.priceCents(), tickets);
+        
+        out.println("\n -----Seats Held!----");
+        out.println(" Movie: " + movie.name());
+        out.println(" Date: " + movie.date());
+        out.println(" Showtime: " + movie.showtime());
+        out.println(" Tickets: " + tickets);
+        out.println(" Seats: " + SeatMap.labels(hold.seats));
+        out.println(" Total Cost: " + Money.format(totalCents));
+
+        String email;
+        while (true) {
+            out.print("\nEnter Email sent the PDF Bill (within " + holds.ttlMillis() / 1000 + " seconds): ");
+            ValidationResult<String> address = checkEmail(in.nextLine());
+            if (address.isValid()) {
+                email = address.value();
+                break;
+            }
+            out.println("Error: " + address.error());
+        }
+
+        if (!hold.confirm()) {
+            out.println("Error: the hold on these seats ran out and they were released, please book again.");
+            return;
+        }
+        try {
+            journal.append(movie, hold.seats);
+        }
+        catch (IOException e) {
+            ReservationEngine.release(movie, hold.seats);
+            out.println("Error: the booking could not be saved, please try again. (" + e.getMessage() + ")");
+            return;
+        }
+        out.println(" -----Booking Confirmed!----");
+
+        try {
+            BillRequest bill = bills().submit(movie, hold.seats, totalCents, email);
+            out.println(" ----PDF Bill Queued: " + bill.fileName + (bills().emails()
+                    ? " (will be emailed to " + email + ")----" : " (not emailed, -Dkemora.smtp.host is not set)----"));
+        }
+        catch (RejectedExecutionException e) {
+            out.println("Error generating PDF: " + e.getMessage());
+        }
+    }
+
+    /** Renders one bill from scratch, the default pipeline uses BillTemplateRenderer instead */
+    static void generatePDFBill(BillRequest bill) throws DocumentException, IOException {
+        Movie movie = bill.movie;
+        Document document = new Document();
+        try (FileOutputStream file = new FileOutputStream(bill.fileName)) {
+            PdfWriter.getInstance(document, file);
+            document.open();
+            
+            document.add(new Paragraph("------  Movie Ticket Reservation Bill ------"));
+            document.add(new Paragraph("Movie : " + movie.name()));
+            document.add(new Paragraph("Date : " + movie.date()));
+            document.add(new Paragraph("Showtime : " + movie.showtime()));
+            document.add(new Paragraph("Tickets : " + bill.tickets));
+            document.add(new Paragraph("Seats : " + SeatMap.labels(bill.seats)));
+            document.add(new Paragraph("Total Cost: " + Money.format(bill.totalCents)));
+            document.add(new Paragraph("\n******Thank you for booking with us (KeMora)!*****"));
+            
+            document.close();
+        }
+    }
+}
\ No newline at end of file
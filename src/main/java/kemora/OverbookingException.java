@@ -0,0 +1,10 @@
+package kemora;
+
+// more tickets than the showtime has seats left, wraps its ValidationResult error like InvalidMovieCodeException
+class OverbookingException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public OverbookingException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,135 @@
+package kemora;
+
+import java.util.Arrays;
+
+/** Atomically checks and takes seats from a showtime, so two cashiers can never sell the same last seats */
+/** each showtime is its own compare-and-set slot in the ShowtimeStore seat column, there is no global lock */
+class ReservationEngine {
+    private ReservationEngine() {
+    }
+
+    /** Takes the seats if they are still free, otherwise throws and leaves the count untouched */
+    static int[] reserve(Movie movie, int tickets) throws OverbookingException {
+        int[] seats = tryReserve(movie, tickets);
+        if (seats == null) {
+            throw new OverbookingException(ValidationResult.OVERBOOKED.error());
+        }
+        return seats;
+    }
+
+    /** Same as reserve but answers null when the seats are gone, for callers that expect to lose races */
+    /** the count is taken first and then the best block of that many seats is claimed on the seat map */
+    static int[] tryReserve(Movie movie, int tickets) {
+        if (tickets <= 0) throw new IllegalArgumentException("tickets must be positive: " + tickets);
+        return reserve(movie, new int[] {tickets}, tickets)[0];
+    }
+
+    /** Takes seats for several bookings on one showtime with a single count reservation, null if they do not all fit */
+    /** each booking still gets its own block of seats */
+    static int[][] tryReserveAll(Movie movie, int[] quantities) {
+        int total = 0;
+        for (int tickets : quantities) {
+            if (tickets <= 0) throw new IllegalArgumentException("tickets must be positive: " + tickets);
+            try {
+                total = Math.addExact(total, tickets);
+            }
+            catch (ArithmeticException e) {
+                // more tickets than an int can count never fit a hall, and a wrapped total could look small enough
+                return null;
+            }
+        }
+        int[][] seats = reserve(movie, quantities, total);
+        return seats[0] == null ? null : seats;
+    }
+
+    /** Follows the showtime into a reloaded schedule when the count has been handed over under us */
+    private static int[][] reserve(Movie movie, int[] quantities, int total) {
+        long started = Metrics.sample();
+        int[][] seats = new int[quantities.length][];
+        Movie live = movie.current();
+        while (live != null) {
+            // the map has to exist before the count changes, it reads the sold seats off the count
+            SeatMap seatMap = live.store.seatMap(live.row);
+            boolean refused = false;
+            boolean countBack = false;
+            seatMap.enter();
+            try {
+                if (live.store.tryReserve(live.row, total)) {
+                    try {
+                        for (int i = 0; i < quantities.length; i++) seats[i] = seatMap.claim(quantities[i]);
+                        Metrics.count(Metrics.TICKETS_SOLD, total);
+                        Metrics.RESERVE.since(started);
+                        return seats;
+                    }
+                    catch (IllegalStateException e) {
+                        // the map disagrees with the count, so give back what this booking took and refuse it
+                        System.out.println("Error claiming seats for " + movie.code() + ": " + e.getMessage());
+                        refused = true;
+                        seatMap.release(claimed(seats));
+                        countBack = live.store.release(live.row, total);
+                        Arrays.fill(seats, null);
+                    }
+                }
+            }
+            finally {
+                seatMap.leave();
+            }
+            if (refused) {
+                // a reload took the row meanwhile, the count went across with it and is given back there
+                if (!countBack) giveBack(live.current(), seatMap, new int[0], total);
+                break;
+            }
+            if (!live.store.isRetired(live.row)) break;
+            live = live.current();
+        }
+        Metrics.count(Metrics.RESERVE_SOLD_OUT, 1);
+        Metrics.RESERVE.since(started);
+        return seats;
+    }
+
+    private static int[] claimed(int[][] seats) {
+        int count = 0;
+        for (int[] booking : seats) count += booking == null ? 0 : booking.length;
+        int[] all = new int[count];
+        int next = 0;
+        for (int[] booking : seats) {
+            if (booking == null) continue;
+            System.arraycopy(booking, 0, all, next, booking.length);
+            next += booking.length;
+        }
+        return all;
+    }
+
+    /** Gives seats back, for example when a booking could not be completed or a hold ran out */
+    static void release(Movie movie, int[] seats) {
+        if (seats.length == 0) throw new IllegalArgumentException("no seats to release");
+        giveBack(movie.current(), null, seats, seats.length);
+        Metrics.count(Metrics.TICKETS_RELEASED, seats.length);
+    }
+
+    /** Frees the seats and returns the count along the chain of reloads, freed is the map they already came off, if any */
+    private static void giveBack(Movie live, SeatMap freed, int[] seats, int giveBack) {
+        while (live != null) {
+            SeatMap seatMap = live.store.seatMap(live.row);
+            seatMap.enter();
+            try {
+                // a reload shares the map when the hall stays the same, so it must not be released twice, and a map being
+                // copied into another hall is left alone, the copy still has the seats or holds placed ones for them
+                if (seatMap != freed && !seatMap.isMoving()) {
+                    // the count only gets back the seats that came free, a hall shrunk by a reload may have none to spare
+                    giveBack = freed == null ? seatMap.release(seats) : seatMap.freePlaced(giveBack);
+                    freed = seatMap;
+                }
+                if (live.store.release(live.row, giveBack)) return;
+            }
+            finally {
+                seatMap.leave();
+            }
+            live = live.current();
+        }
+    }
+
+    static int available(Movie movie) {
+        return movie.availableSeats();
+    }
+}
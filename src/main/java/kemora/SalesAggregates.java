@@ -0,0 +1,195 @@
+package kemora;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Seats sold and revenue per movie, date, language and genre, kept up to date by the ShowtimeStore as its counts change */
+/** counters are striped like a LongAdder, each thread adds to its own stripe and a read sums the few stripes, so it never scans showtimes */
+/** a value's seat and revenue counters sit side by side in one long[], one booking touches a cache line per dimension, not eight adders */
+/** each stripe spans whole cache lines with a spare line after it, so threads on different stripes never share a line */
+/** sold means taken from the count, a seat on hold counts as sold until the hold is released, as totalSeats - availableSeats always did */
+class SalesAggregates {
+    enum Dimension { MOVIE, DATE, LANGUAGE, GENRE }
+
+    /** One dimension value as it stood when it was read */
+    static final class Figures {
+        final String value;
+        final long totalSeats;
+        final long seatsSold;
+        final long revenueCents;
+
+        Figures(String value, long totalSeats, long seatsSold, long revenueCents) {
+            this.value = value;
+            this.totalSeats = totalSeats;
+            this.seatsSold = seatsSold;
+            this.revenueCents = revenueCents;
+        }
+
+        /** Share of the seats sold, 0 to 100 */
+        double occupancy() {
+            return totalSeats == 0 ? 0 : 100.0 * seatsSold / totalSeats;
+        }
+
+        double revenue() {
+            return revenueCents / 100.0;
+        }
+    }
+
+    private static final Dimension[] DIMENSIONS = Dimension.values();
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+    // a power of two near the core count, more stripes than cores only costs reads
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Math.min(64, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    // longs in a 64-byte cache line, stripes start a whole line apart with a spare line between them
+    private static final int LINE = 8;
+
+    private final ShowtimeStore store;
+    // indexed by dimension ordinal, then by the row's id in that dimension
+    private final int[] values = new int[DIMENSIONS.length];
+    private final long[][] totalSeats = new long[DIMENSIONS.length][];
+    // per dimension, stripe after stripe, seats sold at 2 * id and revenue in cents at 2 * id + 1 from the stripe's start
+    private final long[][] counts = new long[DIMENSIONS.length][];
+    // longs from one stripe's start to the next, rounded up to whole cache lines plus one line of padding
+    private final int[] stride = new int[DIMENSIONS.length];
+    private final long soldAtLoad;
+
+    /** Starts from the sold seats the CSV gave, written into the first stripe before anyone can book */
+    SalesAggregates(ShowtimeStore store) {
+        this.store = store;
+        for (Dimension dimension : DIMENSIONS) {
+            values[dimension.ordinal()] = distinct(dimension);
+            totalSeats[dimension.ordinal()] = new long[values[dimension.ordinal()]];
+            stride[dimension.ordinal()] = (2 * values[dimension.ordinal()] + LINE - 1) / LINE * LINE + LINE;
+            counts[dimension.ordinal()] = new long[LINE + STRIPES * stride[dimension.ordinal()]];
+        }
+        long loaded = 0;
+        for (int row = 0; row < store.size(); row++) {
+            int seats = store.totalSeats(row) - store.loadedAvailableSeats(row);
+            long cents = seats * priceCents(row);
+            loaded += seats;
+            for (Dimension dimension : DIMENSIONS) {
+                int id = id(dimension, row);
+                totalSeats[dimension.ordinal()][id] += store.totalSeats(row);
+                counts[dimension.ordinal()][slot(dimension, 0, id)] += seats;
+                counts[dimension.ordinal()][slot(dimension, 0, id) + 1] += cents;
+            }
+        }
+        soldAtLoad = loaded;
+    }
+
+    /** Records seats taken from a row's count, negative when they were given back */
+    void sold(int row, int seats) {
+        long cents = seats * priceCents(row);
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        for (Dimension dimension : DIMENSIONS) {
+            int slot = slot(dimension, stripe, id(dimension, row));
+            long[] count = counts[dimension.ordinal()];
+            COUNTS.getAndAdd(count, slot, (long) seats);
+            COUNTS.getAndAdd(count, slot + 1, cents);
+        }
+    }
+
+    /** Figures of one movie code, date (yyyy-MM-dd), language or genre as written in the CSV, null when it never occurs */
+    Figures figures(Dimension dimension, String value) {
+        int id = find(dimension, value.trim());
+        return id < 0 ? null : figures(dimension, id);
+    }
+
+    /** Every value of a dimension in id order, which is the order they first appear in the CSV */
+    List<Figures> all(Dimension dimension) {
+        List<Figures> all = new ArrayList<>(values[dimension.ordinal()]);
+        for (int id = 0; id < values[dimension.ordinal()]; id++) {
+            // days between the first and last date that have no showtimes
+            if (totalSeats[dimension.ordinal()][id] == 0 && dimension == Dimension.DATE) continue;
+            all.add(figures(dimension, id));
+        }
+        return all;
+    }
+
+    /** The whole schedule, summed over the languages since there are only a handful */
+    Figures overall() {
+        long total = 0;
+        long sold = 0;
+        long revenue = 0;
+        for (int id = 0; id < values[Dimension.LANGUAGE.ordinal()]; id++) {
+            total += totalSeats[Dimension.LANGUAGE.ordinal()][id];
+            sold += sum(Dimension.LANGUAGE, id, 0);
+            revenue += sum(Dimension.LANGUAGE, id, 1);
+        }
+        return new Figures("all", total, sold, revenue);
+    }
+
+    /** Seats the CSV already showed as sold, what was sold since is overall().seatsSold minus this */
+    long soldAtLoad() {
+        return soldAtLoad;
+    }
+
+    private Figures figures(Dimension dimension, int id) {
+        return new Figures(value(dimension, id), totalSeats[dimension.ordinal()][id], sum(dimension, id, 0), sum(dimension, id, 1));
+    }
+
+    /** One counter of a value added up over the stripes, 0 for seats and 1 for revenue */
+    private long sum(Dimension dimension, int id, int counter) {
+        long[] count = counts[dimension.ordinal()];
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += (long) COUNTS.getVolatile(count, slot(dimension, stripe, id) + counter);
+        }
+        return sum;
+    }
+
+    /** Where a value's seat counter sits in a stripe, a line in from the array start so the header never shares it */
+    private int slot(Dimension dimension, int stripe, int id) {
+        return LINE + stripe * stride[dimension.ordinal()] + 2 * id;
+    }
+
+    private long priceCents(int row) {
+        return store.priceCents(row);
+    }
+
+    private int id(Dimension dimension, int row) {
+        switch (dimension) {
+            case MOVIE: return store.codeId(row);
+            case DATE: return store.epochDay(row) - store.firstDay();
+            case LANGUAGE: return store.languageId(row);
+            default: return store.genreId(row);
+        }
+    }
+
+    private int distinct(Dimension dimension) {
+        switch (dimension) {
+            case MOVIE: return store.codes().size();
+            case DATE: return store.days();
+            case LANGUAGE: return store.languages().size();
+            default: return store.genres().size();
+        }
+    }
+
+    private String value(Dimension dimension, int id) {
+        switch (dimension) {
+            case MOVIE: return store.codes().value(id);
+            case DATE: return LocalDate.ofEpochDay(store.firstDay() + id).toString();
+            case LANGUAGE: return store.languages().value(id);
+            default: return store.genres().value(id);
+        }
+    }
+
+    private int find(Dimension dimension, String value) {
+        switch (dimension) {
+            case MOVIE: return store.codes().find(value);
+            case DATE:
+                try {
+                    long id = LocalDate.parse(value).toEpochDay() - store.firstDay();
+                    return id >= 0 && id < store.days() && totalSeats[Dimension.DATE.ordinal()][(int) id] > 0 ? (int) id : -1;
+                }
+                catch (DateTimeException e) {
+                    return -1;
+                }
+            case LANGUAGE: return store.languages().find(value);
+            default: return store.genres().find(value);
+        }
+    }
+}
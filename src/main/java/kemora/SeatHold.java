@@ -0,0 +1,46 @@
+package kemora;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Seats taken for one cashier while the booking is being finished, given back if it is not confirmed in time */
+class SeatHold extends TimingWheel.Timer {
+    private static final int HELD = 0;
+    private static final int CONFIRMED = 1;
+    private static final int EXPIRED = 2;
+    private static final int CANCELLED = 3;
+
+    final Movie movie;
+    final int[] seats;
+    private final SeatHolds owner;
+    private final AtomicInteger state = new AtomicInteger(HELD);
+
+    SeatHold(SeatHolds owner, Movie movie, int[] seats) {
+        this.owner = owner;
+        this.movie = movie;
+        this.seats = seats;
+    }
+
+    /** Turns the hold into a sale, false if it had already expired and the seats went back on sale */
+    boolean confirm() {
+        if (!state.compareAndSet(HELD, CONFIRMED)) return false;
+        owner.confirmed.increment();
+        return true;
+    }
+
+    /** Gives the seats back straight away, for a booking that was abandoned or failed */
+    void cancel() {
+        if (state.compareAndSet(HELD, CANCELLED)) {
+            ReservationEngine.release(movie, seats);
+            owner.cancelled.increment();
+        }
+    }
+
+    /** Confirmed and cancelled holds stay linked in the wheel and are skipped here, so settling costs nothing */
+    @Override
+    void expire() {
+        if (state.compareAndSet(HELD, EXPIRED)) {
+            ReservationEngine.release(movie, seats);
+            owner.expired.increment();
+        }
+    }
+}
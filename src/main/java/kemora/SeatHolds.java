@@ -0,0 +1,77 @@
+package kemora;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Places seat holds with a time limit and lets one timing wheel release the ones that run out */
+/** holds are never removed from the wheel when they are settled, the wheel just finds them already done */
+class SeatHolds {
+    private final TimingWheel wheel;
+    private final long ttlMillis;
+
+    private final LongAdder placed = new LongAdder();
+    final LongAdder confirmed = new LongAdder();
+    final LongAdder expired = new LongAdder();
+    final LongAdder cancelled = new LongAdder();
+
+    SeatHolds(long ttl, TimeUnit unit, long tickMillis) {
+        this.ttlMillis = unit.toMillis(ttl);
+        this.wheel = new TimingWheel(tickMillis, TimeUnit.MILLISECONDS, "seat-hold-expiry");
+    }
+
+    /** Hold time and wheel resolution come from -Dkemora.hold.ttlSeconds and -Dkemora.hold.tickMillis */
+    static SeatHolds fromSystemProperties() {
+        return new SeatHolds(Long.getLong("kemora.hold.ttlSeconds", 300), TimeUnit.SECONDS,
+                Long.getLong("kemora.hold.tickMillis", 100));
+    }
+
+    /** Takes the seats and starts their clock, null when there are not enough left */
+    SeatHold hold(Movie movie, int tickets) {
+        int[] seats = ReservationEngine.tryReserve(movie, tickets);
+        if (seats == null) return null;
+        SeatHold hold = new SeatHold(this, movie, seats);
+        placed.increment();
+        wheel.schedule(hold, ttlMillis, TimeUnit.MILLISECONDS);
+        return hold;
+    }
+
+    long ttlMillis() {
+        return ttlMillis;
+    }
+
+    void stop() {
+        wheel.stop();
+    }
+
+    long placed() {
+        return placed.sum();
+    }
+
+    long confirmed() {
+        return confirmed.sum();
+    }
+
+    long expired() {
+        return expired.sum();
+    }
+
+    long cancelled() {
+        return cancelled.sum();
+    }
+
+    /** Holds still waiting for the cashier */
+    long outstanding() {
+        return placed() - confirmed() - expired() - cancelled();
+    }
+
+    /** Share of settled holds that became sales */
+    double conversionRate() {
+        long settled = confirmed() + expired() + cancelled();
+        return settled == 0 ? 0 : (double) confirmed() / settled;
+    }
+
+    String metricsSummary() {
+        return String.format("holds placed=%d outstanding=%d confirmed=%d expired=%d cancelled=%d conversion=%.1f%%",
+                placed(), outstanding(), confirmed(), expired(), cancelled(), conversionRate() * 100);
+    }
+}
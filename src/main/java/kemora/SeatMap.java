@@ -0,0 +1,281 @@
+package kemora;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Which seats of one showtime are taken, one long per hall row with a set bit for every sold seat */
+/** seats are claimed with a compare-and-set on the row word, the seat count in ShowtimeStore is reserved first */
+/** seats the count says are sold but no journaled booking names are placed from the front and can be given back by a reload */
+class SeatMap {
+    // -Dkemora.seats.perRow sets the hall width, a row has to fit in one long
+    static final int SEATS_PER_ROW = Math.max(1, Math.min(64, Integer.getInteger("kemora.seats.perRow", 20)));
+    // scans in a row that find no free seat although the count promised one, after that the map and count disagree
+    private static final int MAX_MISSES = 1000;
+
+    private final int totalSeats;
+    private final int rows;
+    private final AtomicLongArray taken;
+    // sold seats no booking owns, the CSV only gives a count, set bits are always also set in taken
+    private final AtomicLongArray placed;
+    // claims and releases changing this map together with the count, a reload into another hall waits for them
+    private final AtomicInteger changing = new AtomicInteger();
+    // set once a reload has started copying this map into another hall, releases then leave it alone
+    private volatile boolean moving;
+
+    /** Seats sold before the map existed are placed from the front row, where they disturb the best blocks least */
+    SeatMap(int totalSeats, int alreadySold) {
+        this.totalSeats = totalSeats;
+        this.rows = (totalSeats + SEATS_PER_ROW - 1) / SEATS_PER_ROW;
+        this.taken = new AtomicLongArray(rows);
+        this.placed = new AtomicLongArray(rows);
+        place(alreadySold);
+    }
+
+    /** Claims tickets seats together in one row nearest the centre of the hall, or the best single seats if no row has room */
+    /** the caller must already hold the seat count, so there are always enough free seats to claim */
+    /** if the map still has too few, the seats claimed so far are freed again and IllegalStateException is thrown */
+    int[] claim(int tickets) {
+        if (tickets <= SEATS_PER_ROW) {
+            while (true) {
+                long best = findBlock(tickets);
+                if (best < 0) break;
+                int row = (int) (best >>> 32);
+                int start = (int) best;
+                long word = taken.get(row);
+                long block = lowBits(tickets) << start;
+                if ((word & block) == 0 && taken.compareAndSet(row, word, word | block)) {
+                    int[] seats = new int[tickets];
+                    for (int i = 0; i < tickets; i++) seats[i] = row * SEATS_PER_ROW + start + i;
+                    return seats;
+                }
+            }
+        }
+        // too fragmented for one block, hand out the best seats one at a time
+        int[] seats = new int[tickets];
+        for (int i = 0; i < tickets; i++) {
+            int misses = 0;
+            while (true) {
+                long best = findBlock(1);
+                if (best < 0) {
+                    // the scan reads one row at a time, a release behind it and a claim ahead of it can hide the free seat
+                    if (++misses == MAX_MISSES) {
+                        release(Arrays.copyOf(seats, i));
+                        throw new IllegalStateException("seat map has fewer free seats than the seat count");
+                    }
+                    Thread.onSpinWait();
+                    continue;
+                }
+                int row = (int) (best >>> 32);
+                int start = (int) best;
+                long word = taken.get(row);
+                if ((word & (1L << start)) == 0 && taken.compareAndSet(row, word, word | (1L << start))) {
+                    seats[i] = row * SEATS_PER_ROW + start;
+                    break;
+                }
+            }
+        }
+        return seats;
+    }
+
+    /** Frees seats handed out by claim and answers how many seats really came free */
+    /** a seat that is not in this map, because a reload moved the booking into another hall, frees a placed seat instead */
+    /** and when a reload shrank the hall below its bookings there may be none, the booking then gives back nothing */
+    int release(int[] seats) {
+        int missing = 0;
+        for (int seat : seats) {
+            if (seat < 0 || seat >= totalSeats) {
+                missing++;
+                continue;
+            }
+            int row = seat / SEATS_PER_ROW;
+            long bit = 1L << (seat % SEATS_PER_ROW);
+            if ((placed.get(row) & bit) != 0) {
+                // the seat went across as a placed one, whoever clears that bit also frees the seat
+                if (unplace(row, bit)) taken.getAndAccumulate(row, bit, (w, b) -> w & ~b);
+                else missing++;
+                continue;
+            }
+            if ((taken.getAndAccumulate(row, bit, (w, b) -> w & ~b) & bit) == 0) missing++;
+        }
+        return missing > 0 ? seats.length - missing + freePlaced(missing) : seats.length;
+    }
+
+    /** Marks seats that a journaled booking holds, seats the hall no longer has or that are already sold are placed elsewhere */
+    void take(int[] seats) {
+        int elsewhere = 0;
+        for (int seat : seats) {
+            if (seat < 0 || seat >= totalSeats) {
+                elsewhere++;
+                continue;
+            }
+            int row = seat / SEATS_PER_ROW;
+            long bit = 1L << (seat % SEATS_PER_ROW);
+            if ((taken.getAndAccumulate(row, bit, (w, b) -> w | b) & bit) == 0) continue;
+            // a placed seat becomes this booking's and the count it stood for moves on, a booked one means the files disagree
+            unplace(row, bit);
+            elsewhere++;
+        }
+        place(elsewhere);
+    }
+
+    /** Sells the given number of free seats from the front row without a booking to own them */
+    void place(int count) {
+        for (int row = 0; row < rows && count > 0; row++) {
+            while (count > 0) {
+                long word = taken.get(row);
+                long free = ~word & lowBits(width(row));
+                if (free == 0) break;
+                long lowest = Long.lowestOneBit(free);
+                if (taken.compareAndSet(row, word, word | lowest)) {
+                    placed.getAndAccumulate(row, lowest, (w, b) -> w | b);
+                    count--;
+                }
+            }
+        }
+    }
+
+    /** True when this call cleared the placed bit, false when it was not set or someone else cleared it */
+    private boolean unplace(int row, long bit) {
+        while (true) {
+            long word = placed.get(row);
+            if ((word & bit) == 0) return false;
+            if (placed.compareAndSet(row, word, word & ~bit)) return true;
+        }
+    }
+
+    /** Frees up to the given number of placed seats from the front row and answers how many it freed */
+    /** seats a booking holds are never freed here, the CSV cannot say which of those were given back */
+    int freePlaced(int count) {
+        int freed = 0;
+        for (int row = 0; row < rows && freed < count; row++) {
+            while (freed < count) {
+                long word = placed.get(row);
+                if (word == 0) break;
+                long lowest = Long.lowestOneBit(word);
+                if (placed.compareAndSet(row, word, word & ~lowest)) {
+                    taken.getAndAccumulate(row, lowest, (w, b) -> w & ~b);
+                    freed++;
+                }
+            }
+        }
+        return freed;
+    }
+
+    /** The same seats in a hall of another size: booked seats keep their numbers, the rest of the count is placed again */
+    /** only once the count is frozen, it waits for the claims and releases already under way on this map */
+    SeatMap resized(int totalSeats, int available) {
+        moving = true;
+        while (changing.get() > 0) Thread.onSpinWait();
+        SeatMap moved = new SeatMap(totalSeats, 0);
+        for (int row = 0; row < Math.min(rows, moved.rows); row++) {
+            moved.taken.set(row, taken.get(row) & ~placed.get(row) & lowBits(moved.width(row)));
+        }
+        int extra = moved.freeSeats() - available;
+        if (extra > 0) moved.place(extra);
+        return moved;
+    }
+
+    /** Called before changing the count of this map's showtime, leave once the seats match it again, neither ever blocks */
+    void enter() {
+        changing.incrementAndGet();
+    }
+
+    void leave() {
+        changing.decrementAndGet();
+    }
+
+    /** True once a reload copies this map into another hall, read it between enter and leave */
+    boolean isMoving() {
+        return moving;
+    }
+
+    /** The free block of the given length closest to the centre, as row << 32 | first seat, or -1 */
+    /** distances are doubled so that the centre of an even row or block stays a whole number */
+    long findBlock(int length) {
+        long best = -1;
+        int bestScore = Integer.MAX_VALUE;
+        int ideal = (SEATS_PER_ROW - length) / 2;
+        for (int row = 0; row < rows; row++) {
+            int rowScore = Math.abs(2 * row - (rows - 1));
+            if (rowScore >= bestScore) continue;
+            long starts = blockStarts(~taken.get(row) & lowBits(width(row)), length);
+            if (starts == 0) continue;
+            // nearest start at or right of the ideal one, and nearest left of it
+            long right = starts & -(1L << ideal);
+            long left = starts & ((1L << ideal) - 1);
+            int start = -1;
+            int seatScore = Integer.MAX_VALUE;
+            if (right != 0) {
+                start = Long.numberOfTrailingZeros(right);
+                seatScore = Math.abs(2 * start + length - SEATS_PER_ROW);
+            }
+            if (left != 0) {
+                int candidate = 63 - Long.numberOfLeadingZeros(left);
+                int score = Math.abs(2 * candidate + length - SEATS_PER_ROW);
+                if (score < seatScore) {
+                    start = candidate;
+                    seatScore = score;
+                }
+            }
+            if (rowScore + seatScore < bestScore) {
+                bestScore = rowScore + seatScore;
+                best = (long) row << 32 | start;
+            }
+        }
+        return best;
+    }
+
+    /** Bit i is set when seats i to i + length - 1 are all free, built by doubling the run length */
+    private static long blockStarts(long free, int length) {
+        long starts = free;
+        int run = 1;
+        while (run < length) {
+            int step = Math.min(run, length - run);
+            starts &= starts >>> step;
+            run += step;
+        }
+        return starts;
+    }
+
+    private int width(int row) {
+        return row == rows - 1 ? totalSeats - row * SEATS_PER_ROW : SEATS_PER_ROW;
+    }
+
+    private static long lowBits(int count) {
+        return count == 64 ? -1L : (1L << count) - 1;
+    }
+
+    int freeSeats() {
+        int free = 0;
+        for (int row = 0; row < rows; row++) free += width(row) - Long.bitCount(taken.get(row));
+        return free;
+    }
+
+    /** Seat number as printed on the ticket, rows are lettered from the front: A1, B12, AA3 */
+    static String label(int seat) {
+        return appendLabel(new StringBuilder(6), seat).toString();
+    }
+
+    static StringBuilder appendLabel(StringBuilder text, int seat) {
+        int row = seat / SEATS_PER_ROW;
+        int start = text.length();
+        do {
+            text.insert(start, (char) ('A' + row % 26));
+            row = row / 26 - 1;
+        } while (row >= 0);
+        return text.append(seat % SEATS_PER_ROW + 1);
+    }
+
+    static String labels(int[] seats) {
+        return appendLabels(new StringBuilder(), seats).toString();
+    }
+
+    static StringBuilder appendLabels(StringBuilder text, int[] seats) {
+        for (int i = 0; i < seats.length; i++) {
+            if (i > 0) text.append(' ');
+            appendLabel(text, seats[i]);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,138 @@
+package kemora;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Starts shard nodes as separate local processes, books through a ShardRouter and reports throughput, latency and a sold-seat check */
+/** usage: java kemora.ShardLoadGenerator [nodes] [bookings] [concurrency] [showtimes] */
+public class ShardLoadGenerator {
+    private static final String[] SHOWTIMES = {"Morning", "Afternoon", "Evening"};
+    private static final String[] LANGUAGES = {"English", "Sinhala", "Tamil", "Hindi"};
+    private static final int SEATS = 2000;
+    private static final int BASE_PORT = 16060;
+
+    public static void main(String[] args) throws Exception {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int bookings = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int showtimes = args.length > 3 ? Integer.parseInt(args[3]) : 30_000;
+        int movies = showtimes / 30;
+
+        Path dir = Files.createTempDirectory("kemora-shards");
+        writeSchedule(dir.resolve("Movie Reservation Dataset.csv"), movies);
+        List<Process> processes = new ArrayList<>();
+        try (ShardRouter router = ShardRouter.onLoopback(BASE_PORT, nodes)) {
+            for (int i = 0; i < nodes; i++) processes.add(startNode(dir, i, nodes));
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+            while (!router.ready()) {
+                if (System.nanoTime() > deadline) throw new IOException("shards did not come up, see " + dir);
+                Thread.sleep(200);
+            }
+            System.out.println("shard logs and journals in " + dir);
+
+            long[] latencies = new long[bookings];
+            AtomicInteger confirmed = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            Semaphore inFlight = new Semaphore(concurrency);
+            ExecutorService clients = BookingServer.newSessionExecutor();
+            long start = System.nanoTime();
+            for (int i = 0; i < bookings; i++) {
+                inFlight.acquire();
+                int booking = i;
+                clients.execute(() -> {
+                    try {
+                        int movie = (int) ((ShardRing.hash("booking" + booking) >>> 1) % movies);
+                        int row = booking % 30;
+                        long begin = System.nanoTime();
+                        String answer = router.book(code(movie), date(row), SHOWTIMES[row % 3], 1, "");
+                        latencies[booking] = System.nanoTime() - begin;
+                        if (answer.startsWith("OK")) confirmed.incrementAndGet();
+                        else failed.incrementAndGet();
+                    }
+                    catch (IOException e) {
+                        failed.incrementAndGet();
+                        latencies[booking] = -1;
+                    }
+                    finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            clients.shutdown();
+            clients.awaitTermination(1, TimeUnit.HOURS);
+            long elapsed = System.nanoTime() - start;
+
+            long[] ok = Arrays.stream(latencies).filter(l -> l > 0).sorted().toArray();
+            System.out.printf("nodes=%d bookings=%d confirmed=%d failed=%d%n", nodes, bookings, confirmed.get(), failed.get());
+            System.out.printf("throughput=%.1f bookings/s%n", bookings / (elapsed / 1e9));
+            if (ok.length > 0) {
+                System.out.printf("latency p50=%.2fms p99=%.2fms max=%.2fms%n",
+                        percentile(ok, 0.50) / 1e6, percentile(ok, 0.99) / 1e6, ok[ok.length - 1] / 1e6);
+            }
+
+            // every confirmed booking took exactly one seat on exactly one shard
+            long sold = 0;
+            for (int movie = 0; movie < movies; movie++) {
+                for (ShardRouter.Row row : router.showtimes(code(movie))) sold += SEATS - row.availableSeats;
+            }
+            System.out.printf("seats sold across shards=%d (%s)%n", sold, sold == confirmed.get() ? "matches" : "MISMATCH");
+
+            long searchStart = System.nanoTime();
+            int searches = 200;
+            int found = 0;
+            for (int i = 0; i < searches; i++) {
+                found += router.search(List.of("language=" + LANGUAGES[i % 4], "date=" + date(i % 30), "seats=1"), 20).size();
+            }
+            System.out.printf("scatter-gather search avg=%.2fms (%d rows)%n", (System.nanoTime() - searchStart) / 1e6 / searches, found);
+        }
+        finally {
+            for (Process process : processes) process.destroy();
+            for (Process process : processes) process.waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static Process startNode(Path dir, int shard, int nodes) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        // each shard keeps its journal and bills in its own folder under dir, see main
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "-Dkemora.reload=false",
+                "kemora.MovieTicketReservationGroup_KeMora", "--shard",
+                String.valueOf(shard), String.valueOf(nodes), String.valueOf(BASE_PORT + shard))
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(dir.resolve("shard-" + shard + ".log").toFile())
+                .start();
+    }
+
+    /** Thirty showtimes per movie over ten days, every hall empty */
+    private static void writeSchedule(Path path, int movies) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("Movie Code,Movie Name,Date,Showtime,Total Seats,Available Seats,Ticket Price,Language,Genre");
+            out.newLine();
+            for (int movie = 0; movie < movies; movie++) {
+                for (int row = 0; row < 30; row++) {
+                    out.write(code(movie) + ",Movie Number " + movie + "," + date(row) + "," + SHOWTIMES[row % 3] + ","
+                            + SEATS + "," + SEATS + "," + (8 + movie % 10) + ".00," + LANGUAGES[movie % 4] + ",Drama");
+                    out.newLine();
+                }
+            }
+        }
+    }
+
+    private static String code(int movie) {
+        return String.format("M%06d", movie);
+    }
+
+    private static String date(int row) {
+        return String.format("2025-04-%02d", 1 + row / 3);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,154 @@
+package kemora;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/** One shard of a partitioned deployment: owns the showtimes of the movie codes the ring gives it and books only those */
+/** a booking never leaves the owning shard, so it stays one compare-and-set and one journal write as on a single node */
+/** requests are single tab-separated lines, answers are one line, or ROW lines closed by END */
+/** BOOK code date showtime tickets [email] answers OK seats totalCost, ERR message, or MOVED owner when another shard has the code */
+/** SHOWTIMES code and SEARCH limit filter... answer ROW lines, the filters are the ones --search takes */
+class ShardNode {
+    static final int BASE_PORT = 6060;
+
+    private final int shard;
+    private final ShardRing ring;
+    private final Supplier<ShowtimeCatalog> catalog;
+    private final BookingJournal journal;
+    private final BillPipeline bills;
+    private final ExecutorService sessions = BookingServer.newSessionExecutor();
+
+    ShardNode(int shard, ShardRing ring, Supplier<ShowtimeCatalog> catalog, BookingJournal journal, BillPipeline bills) {
+        this.shard = shard;
+        this.ring = ring;
+        this.catalog = catalog;
+        this.journal = journal;
+        this.bills = bills;
+    }
+
+    /** Keeps only the rows of the codes this shard owns while the CSV is read */
+    static ShowtimeRowSink owned(ShardRing ring, int shard, ShowtimeRowSink sink) {
+        return (code, name, date, showtime, totalSeats, availableSeats, priceCents, language, genre) -> {
+            if (ring.owner(code) == shard) {
+                sink.row(code, name, date, showtime, totalSeats, availableSeats, priceCents, language, genre);
+            }
+        };
+    }
+
+    /** Accepts router connections until the process is stopped, each connection sends any number of requests */
+    void serve(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+            System.out.println("Shard " + shard + " of " + ring.shards() + " listening on " + server.getLocalSocketAddress()
+                    + " with " + catalog.get().size() + " showtimes");
+            while (true) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                sessions.execute(() -> runConnection(socket));
+            }
+        }
+        finally {
+            sessions.shutdown();
+        }
+    }
+
+    private void runConnection(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String request;
+            while ((request = in.readLine()) != null) {
+                out.write(answer(request));
+                out.flush();
+            }
+        }
+        catch (IOException e) {
+            // the router closed the connection, nothing left to answer
+        }
+    }
+
+    /** The full answer to one request line, newline included */
+    String answer(String request) {
+        String[] fields = request.split("\t", -1);
+        switch (fields[0]) {
+            case "BOOK": return book(fields);
+            case "SHOWTIMES": return showtimes(fields);
+            case "SEARCH": return search(fields);
+            case "PING": return "PONG\n";
+            default: return "ERR\tunknown request " + fields[0] + "\n";
+        }
+    }
+
+    private String book(String[] fields) {
+        if (fields.length < 5) return "ERR\texpected BOOK code date showtime tickets [email]\n";
+        String code = fields[1].trim().toUpperCase();
+        int owner = ring.owner(code);
+        if (owner != shard) return "MOVED\t" + owner + "\n";
+        ValidationResult<List<Movie>> showtimes = MovieTicketReservationGroup_KeMora.checkMovieCode(code);
+        if (!showtimes.isValid()) return "ERR\t" + showtimes.error() + "\n";
+        ValidationResult<Movie> showtime = MovieTicketReservationGroup_KeMora.checkShowtime(showtimes.value(), fields[2].trim(), fields[3].trim());
+        if (!showtime.isValid()) return "ERR\t" + showtime.error() + "\n";
+        Movie movie = showtime.value();
+        ValidationResult<Integer> quantity = MovieTicketReservationGroup_KeMora.checkTicketQuantity(fields[4].trim(), movie);
+        if (!quantity.isValid()) return "ERR\t" + quantity.error() + "\n";
+        String email = fields.length > 5 ? fields[5].trim() : "";
+        if (!email.isEmpty()) {
+            ValidationResult<String> address = MovieTicketReservationGroup_KeMora.checkEmail(email);
+            if (!address.isValid()) return "ERR\t" + address.error() + "\n";
+            email = address.value();
+        }
+
+        int[] seats = ReservationEngine.tryReserve(movie, quantity.value());
+        if (seats == null) return "ERR\t" + ValidationResult.OVERBOOKED.error() + "\n";
+        try {
+            journal.append(movie, seats);
+        }
+        catch (IOException e) {
+            ReservationEngine.release(movie, seats);
+            return "ERR\tthe booking could not be saved (" + e.getMessage() + ")\n";
+        }
+        long totalCents = Money.total(movie.priceCents(), seats.length);
+        if (!email.isEmpty()) {
+            try {
+                bills.submit(movie, seats, totalCents, email);
+            }
+            catch (RejectedExecutionException e) {
+                System.out.println("Error queueing bill for " + email + ": " + e.getMessage());
+            }
+        }
+        return "OK\t" + SeatMap.labels(seats) + "\t" + Money.format(totalCents) + "\n";
+    }
+
+    private String showtimes(String[] fields) {
+        if (fields.length < 2) return "ERR\texpected SHOWTIMES code\n";
+        return rows(catalog.get().showtimes(fields[1]));
+    }
+
+    private String search(String[] fields) {
+        try {
+            int limit = Integer.parseInt(fields[1].trim());
+            ShowtimeQuery query = ShowtimeQuery.parse(Arrays.asList(fields).subList(2, fields.length));
+            return rows(catalog.get().search().search(query, 0, limit).showtimes);
+        }
+        catch (RuntimeException e) {
+            return "ERR\t" + e.getMessage() + "\n";
+        }
+    }
+
+    /** One ROW line per showtime, closed by END */
+    private static String rows(List<Movie> movies) {
+        StringBuilder text = new StringBuilder(64 * movies.size() + 4);
+        for (Movie movie : movies) {
+            text.append("ROW\t").append(movie.code()).append('\t').append(movie.name()).append('\t').append(movie.date()).append('\t')
+                    .append(movie.showtime()).append('\t').append(movie.language()).append('\t').append(movie.genre()).append('\t')
+                    .append(Money.format(movie.priceCents())).append('\t').append(movie.availableSeats()).append('\n');
+        }
+        return text.append("END\n").toString();
+    }
+}
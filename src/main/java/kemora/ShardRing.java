@@ -0,0 +1,59 @@
+package kemora;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Consistent hash ring that gives every movie code one owning shard */
+/** each shard sits on the ring many times, so codes spread evenly and adding a shard only moves about 1/n of them */
+class ShardRing {
+    static final int POINTS_PER_SHARD = 160;
+
+    private final int shards;
+    private final long[] points;
+    private final int[] owners;
+
+    ShardRing(int shards) {
+        if (shards <= 0) throw new IllegalArgumentException("need at least one shard: " + shards);
+        this.shards = shards;
+        long[] keys = new long[shards * POINTS_PER_SHARD];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int point = 0; point < POINTS_PER_SHARD; point++) {
+                // the shard number sits in the low bits so equal hashes still sort apart
+                keys[shard * POINTS_PER_SHARD + point] = hash("shard-" + shard + "#" + point) & ~0xFFFFL | shard;
+            }
+        }
+        Arrays.sort(keys);
+        points = keys;
+        owners = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) owners[i] = (int) (keys[i] & 0xFFFF);
+    }
+
+    int shards() {
+        return shards;
+    }
+
+    /** The shard owning every showtime of this movie code, case and spaces ignored like the catalog does */
+    int owner(String code) {
+        if (shards == 1) return 0;
+        long hash = hash(ShowtimeCatalog.normalize(code));
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) index = -index - 1;
+        // past the last point the ring wraps round to the first
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /** 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so short codes spread over the ring */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
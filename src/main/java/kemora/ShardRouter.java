@@ -0,0 +1,172 @@
+package kemora;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+/** Client side of the shard protocol: sends each booking to the shard that owns its movie code and scatters browse queries to all */
+/** connections are kept open and pooled per shard, a connection carries one request at a time */
+class ShardRouter implements Closeable {
+    /** One showtime as a shard reported it */
+    static final class Row {
+        final String code;
+        final String name;
+        final String date;
+        final String showtime;
+        final String language;
+        final String genre;
+        final long priceCents;
+        final int availableSeats;
+
+        Row(String[] fields) {
+            this.code = fields[1];
+            this.name = fields[2];
+            this.date = fields[3];
+            this.showtime = fields[4];
+            this.language = fields[5];
+            this.genre = fields[6];
+            this.priceCents = Money.parse(fields[7]);
+            this.availableSeats = Integer.parseInt(fields[8]);
+        }
+    }
+
+    /** Same order as ShowtimeSearch pages: date, then price, then code and showtime to break ties between shards */
+    static final Comparator<Row> RESULT_ORDER = Comparator.<Row, String>comparing(row -> row.date)
+            .thenComparingLong(row -> row.priceCents)
+            .thenComparing(row -> row.code).thenComparing(row -> row.showtime);
+
+    private static final class Connection {
+        final Socket socket;
+        final BufferedReader in;
+        final Writer out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private final ShardRing ring;
+    private final InetSocketAddress[] shards;
+    private final List<BlockingQueue<Connection>> idle = new ArrayList<>();
+    private final ExecutorService scatter = BookingServer.newSessionExecutor();
+
+    ShardRouter(List<InetSocketAddress> shards) {
+        this.ring = new ShardRing(shards.size());
+        this.shards = shards.toArray(new InetSocketAddress[0]);
+        for (int i = 0; i < this.shards.length; i++) idle.add(new LinkedBlockingQueue<>());
+    }
+
+    /** Shards on consecutive loopback ports, shard i on basePort + i */
+    static ShardRouter onLoopback(int basePort, int count) {
+        List<InetSocketAddress> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) shards.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), basePort + i));
+        return new ShardRouter(shards);
+    }
+
+    int owner(String code) {
+        return ring.owner(code);
+    }
+
+    /** Books on the owning shard, the answer line is OK seats totalCost or ERR message */
+    String book(String code, String date, String showtime, int tickets, String email) throws IOException {
+        String request = "BOOK\t" + code + "\t" + date + "\t" + showtime + "\t" + tickets + "\t" + (email == null ? "" : email);
+        String answer = call(ring.owner(code), request, false).get(0);
+        if (answer.startsWith("MOVED")) {
+            throw new IOException("shard " + ring.owner(code) + " does not own " + code + ", the shards were started with a different count");
+        }
+        return answer;
+    }
+
+    /** All showtimes of a movie code, from its owning shard */
+    List<Row> showtimes(String code) throws IOException {
+        return rows(call(ring.owner(code), "SHOWTIMES\t" + code, true));
+    }
+
+    /** Asks every shard for its first limit matches at once and merges them into the first limit overall */
+    List<Row> search(List<String> filters, int limit) throws IOException {
+        String request = "SEARCH\t" + limit + (filters.isEmpty() ? "" : "\t" + String.join("\t", filters));
+        List<Future<List<String>>> answers = new ArrayList<>();
+        for (int shard = 0; shard < shards.length; shard++) {
+            int target = shard;
+            answers.add(scatter.submit(() -> call(target, request, true)));
+        }
+        List<Row> merged = new ArrayList<>();
+        for (Future<List<String>> answer : answers) {
+            try {
+                merged.addAll(rows(answer.get()));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("search interrupted");
+            }
+            catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+        merged.sort(RESULT_ORDER);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    /** True once every shard answers a PING */
+    boolean ready() {
+        for (int shard = 0; shard < shards.length; shard++) {
+            try {
+                if (!"PONG".equals(call(shard, "PING", false).get(0))) return false;
+            }
+            catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Row> rows(List<String> lines) throws IOException {
+        List<Row> rows = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            if (line.startsWith("ERR")) throw new IOException(line.substring(Math.min(4, line.length())));
+            rows.add(new Row(line.split("\t", -1)));
+        }
+        return rows;
+    }
+
+    /** Sends one request and reads its answer, up to END for ROW answers */
+    private List<String> call(int shard, String request, boolean multiLine) throws IOException {
+        Connection connection = idle.get(shard).poll();
+        if (connection == null) connection = new Connection(shards[shard]);
+        try {
+            connection.out.write(request);
+            connection.out.write('\n');
+            connection.out.flush();
+            List<String> lines = new ArrayList<>();
+            while (true) {
+                String line = connection.in.readLine();
+                if (line == null) throw new EOFException("shard " + shard + " closed the connection");
+                if (multiLine && line.equals("END")) break;
+                lines.add(line);
+                if (!multiLine || line.startsWith("ERR")) break;
+            }
+            idle.get(shard).add(connection);
+            return lines;
+        }
+        catch (IOException e) {
+            // a broken connection is dropped, the next call opens a fresh one
+            connection.socket.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        scatter.shutdownNow();
+        for (BlockingQueue<Connection> connections : idle) {
+            Connection connection;
+            while ((connection = connections.poll()) != null) connection.socket.close();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package kemora;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Read-only index over the loaded showtimes, built once after the CSV is loaded */
+/** every lookup is a single hash probe and returns a pre-built immutable list, a movie's split by date is built on its first lookup */
+/** the buckets hold row numbers into the ShowtimeStore, Movie views are handed out on access */
+class ShowtimeCatalog {
+    static final ShowtimeCatalog EMPTY = build(new ShowtimeStore.Builder().build());
+
+    private final ShowtimeStore store;
+    private final List<Movie> all;
+    private final Map<String, List<Movie>> byCode;
+    // normalized code to that movie's showtimes by date, only for movies that have been looked up
+    private final Map<String, Map<String, List<Movie>>> byCodeAndDate = new ConcurrentHashMap<>();
+    private final Map<String, List<Movie>> byLanguage;
+    private final Map<String, List<Movie>> byGenre;
+    private volatile ShowtimeSearch search;
+
+    private ShowtimeCatalog(ShowtimeStore store, Map<String, List<Movie>> byCode, Map<String, List<Movie>> byLanguage,
+                            Map<String, List<Movie>> byGenre) {
+        this.store = store;
+        this.all = new RowList(store, null, store.size());
+        this.byCode = byCode;
+        this.byLanguage = byLanguage;
+        this.byGenre = byGenre;
+    }
+
+    /** Builds every index in one pass, keeping the CSV order inside each bucket */
+    /** text is normalized once per dictionary value rather than once per row, the pass itself only moves ints */
+    static ShowtimeCatalog build(ShowtimeStore store) {
+        Groups codes = new Groups(store.codes());
+        Groups languages = new Groups(store.languages());
+        Groups genres = new Groups(store.genres());
+        for (int row = 0; row < store.size(); row++) {
+            codes.buckets.get(codes.of(store.codeId(row))).add(row);
+            languages.buckets.get(languages.of(store.languageId(row))).add(row);
+            genres.buckets.get(genres.of(store.genreId(row))).add(row);
+        }
+        return new ShowtimeCatalog(store, freeze(store, codes.index()), freeze(store, languages.index()),
+                freeze(store, genres.index()));
+    }
+
+    /** All showtimes of a movie code, ignoring case, or an empty list */
+    List<Movie> showtimes(String code) {
+        return lookup(byCode, normalize(code));
+    }
+
+    /** Showtimes of a movie code on one date (yyyy-MM-dd) */
+    List<Movie> showtimes(String code, String date) {
+        String key = normalize(code);
+        List<Movie> showtimes = byCode.get(key);
+        if (showtimes == null) return Collections.emptyList();
+        return lookup(byCodeAndDate.computeIfAbsent(key, k -> byDate(showtimes)), date.trim());
+    }
+
+    /** One movie's showtimes split by date, CSV order kept inside each date */
+    private Map<String, List<Movie>> byDate(List<Movie> showtimes) {
+        Map<String, RowBucket> dates = new HashMap<>();
+        for (Movie movie : showtimes) dates.computeIfAbsent(movie.date(), k -> new RowBucket()).add(movie.row);
+        return freeze(store, dates);
+    }
+
+    /** The showtime with this code, date and showtime name, or null */
+    Movie find(String code, String date, String showtime) {
+        for (Movie movie : showtimes(code, date)) {
+            if (movie.showtime().equalsIgnoreCase(showtime.trim())) return movie;
+        }
+        return null;
+    }
+
+    List<Movie> byLanguage(String language) {
+        return lookup(byLanguage, normalize(language));
+    }
+
+    List<Movie> byGenre(String genre) {
+        return lookup(byGenre, normalize(genre));
+    }
+
+    /** The kiosk search indexes, built on first use since the cashier flow never needs them */
+    ShowtimeSearch search() {
+        ShowtimeSearch built = search;
+        if (built == null) {
+            synchronized (this) {
+                built = search;
+                if (built == null) search = built = ShowtimeSearch.build(store);
+            }
+        }
+        return built;
+    }
+
+    boolean hasSearch() {
+        return search != null;
+    }
+
+    List<Movie> all() {
+        return all;
+    }
+
+    int size() {
+        return store.size();
+    }
+
+    /** Live seats sold and revenue per movie, date, language and genre */
+    SalesAggregates sales() {
+        return store.sales();
+    }
+
+    ShowtimeStore store() {
+        return store;
+    }
+
+    private static List<Movie> lookup(Map<String, List<Movie>> index, String key) {
+        List<Movie> movies = index.get(key);
+        return movies == null ? Collections.emptyList() : movies;
+    }
+
+    private static Map<String, List<Movie>> freeze(ShowtimeStore store, Map<String, RowBucket> index) {
+        Map<String, List<Movie>> frozen = new HashMap<>(index.size() * 4 / 3 + 1);
+        for (Map.Entry<String, RowBucket> entry : index.entrySet()) {
+            RowBucket bucket = entry.getValue();
+            frozen.put(entry.getKey(), new RowList(store, Arrays.copyOf(bucket.rows, bucket.size), bucket.size));
+        }
+        return Collections.unmodifiableMap(frozen);
+    }
+
+    static String normalize(String value) {
+        return value.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /** The distinct normalized values of a dictionary, each with the bucket its rows go to */
+    /** values that differ only in case or spaces, such as m001 and M001, share one bucket */
+    private static final class Groups {
+        final List<String> keys = new ArrayList<>();
+        final List<RowBucket> buckets = new ArrayList<>();
+        private final int[] groupOfId;
+
+        Groups(StringDictionary dictionary) {
+            groupOfId = new int[dictionary.size()];
+            Map<String, Integer> groups = new HashMap<>();
+            for (int id = 0; id < dictionary.size(); id++) {
+                String key = normalize(dictionary.value(id));
+                Integer group = groups.get(key);
+                if (group == null) {
+                    group = keys.size();
+                    groups.put(key, group);
+                    keys.add(key);
+                    buckets.add(new RowBucket());
+                }
+                groupOfId[id] = group;
+            }
+        }
+
+        int of(int id) {
+            return groupOfId[id];
+        }
+
+        Map<String, RowBucket> index() {
+            Map<String, RowBucket> index = new HashMap<>(keys.size() * 4 / 3 + 1);
+            for (int group = 0; group < keys.size(); group++) index.put(keys.get(group), buckets.get(group));
+            return index;
+        }
+    }
+
+    /** Growable int list used while the indexes are built */
+    private static final class RowBucket {
+        int[] rows = new int[4];
+        int size;
+
+        void add(int row) {
+            if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = row;
+        }
+    }
+
+    /** Immutable list of showtime rows, a null rows array means every row of the store in order */
+    private static final class RowList extends AbstractList<Movie> implements RandomAccess {
+        private final ShowtimeStore store;
+        private final int[] rows;
+        private final int size;
+
+        RowList(ShowtimeStore store, int[] rows, int size) {
+            this.store = store;
+            this.rows = rows;
+            this.size = size;
+        }
+
+        @Override
+        public Movie get(int index) {
+            Objects.checkIndex(index, size);
+            return store.movie(rows == null ? index : rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
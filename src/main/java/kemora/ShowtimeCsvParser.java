@@ -0,0 +1,413 @@
+package kemora;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/** Streaming parser for the showtime CSV, reads the file in large blocks through a FileChannel */
+/** fields are parsed in place from the bytes, repeated strings are shared and bad rows are reported by line number */
+class ShowtimeCsvParser {
+    static final int FIELDS = 9;
+    private static final int BLOCK = 1 << 20;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final String[] COLUMNS = {"Movie Code", "Movie Name", "Date", "Showtime", "Total Seats",
+            "Available Seats", "Ticket Price", "Language", "Genre"};
+
+    private final StringPool pool = new StringPool();
+    private final int[] fieldStart = new int[FIELDS];
+    private final int[] fieldEnd = new int[FIELDS];
+    private final boolean[] fieldEscaped = new boolean[FIELDS];
+    private byte[] scratch = new byte[256];
+    private final List<Long> errorLines = new ArrayList<>();
+    private final List<String> errorReasons = new ArrayList<>();
+    private long rows;
+    private long badRows;
+
+    /** Parses the whole file, skipping the header line */
+    void parseFile(Path path, ShowtimeRowSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            parseRange(channel, 0, channel.size(), 1, true, sink);
+        }
+    }
+
+    /** Parses the file on a fork-join pool of the given size, splitting it into line-aligned byte ranges */
+    /** the ranges are merged back in file order, so the sink sees exactly what parseFile would give it */
+    void parseFileParallel(Path path, int threads, ShowtimeRowSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = alignToLine(channel, 1, size);
+            int chunks = (int) Math.max(1, Math.min(threads * 4L, size / BLOCK));
+            long[] bounds = new long[chunks + 1];
+            bounds[0] = dataStart;
+            for (int i = 1; i < chunks; i++) {
+                bounds[i] = Math.max(bounds[i - 1], alignToLine(channel, dataStart + (size - dataStart) * i / chunks, size));
+            }
+            bounds[chunks] = size;
+
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(chunks);
+                for (int i = 0; i < chunks; i++) {
+                    long from = bounds[i];
+                    long to = bounds[i + 1];
+                    tasks.add(pool.submit(() -> Chunk.parse(channel, from, to)));
+                }
+                long line = 2;
+                for (ForkJoinTask<Chunk> task : tasks) {
+                    Chunk chunk = task.join();
+                    chunk.rows.replay(sink);
+                    rows += chunk.parser.rows;
+                    badRows += chunk.parser.badRows;
+                    for (int i = 0; i < chunk.parser.errorLines.size() && errorLines.size() < MAX_REPORTED_ERRORS; i++) {
+                        errorLines.add(line + chunk.parser.errorLines.get(i) - 1);
+                        errorReasons.add(chunk.parser.errorReasons.get(i));
+                    }
+                    line += chunk.lines;
+                }
+            }
+            catch (RuntimeException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw e;
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /** Parses the lines in the byte range [from, to) of the file, which must start and end on a line boundary */
+    long parseRange(FileChannel channel, long from, long to, long firstLine, boolean skipHeader, ShowtimeRowSink sink) throws IOException {
+        byte[] block = new byte[BLOCK];
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        long position = from;
+        long line = firstLine;
+        boolean header = skipHeader;
+        int carried = 0;
+        while (position < to) {
+            buffer.limit((int) Math.min(block.length, carried + (to - position)));
+            buffer.position(carried);
+            int read = channel.read(buffer, position);
+            if (read < 0) break;
+            position += read;
+            int filled = carried + read;
+            int end = position < to ? lastNewline(block, filled) + 1 : filled;
+            if (end == 0) {
+                // a single line does not fit, grow the block and read on
+                block = Arrays.copyOf(block, block.length * 2);
+                buffer = ByteBuffer.wrap(block);
+                carried = filled;
+                continue;
+            }
+            line = parse(block, 0, end, line, header, sink);
+            header = false;
+            carried = filled - end;
+            System.arraycopy(block, end, block, 0, carried);
+        }
+        return line;
+    }
+
+    /** Parses the complete lines in [from, to) and returns the number of the line after the last one parsed */
+    long parse(byte[] buf, int from, int to, long firstLine, boolean skipHeader, ShowtimeRowSink sink) {
+        long line = firstLine;
+        int position = from;
+        if (skipHeader && position < to) {
+            position = nextLine(buf, position, to);
+            line++;
+        }
+        while (position < to) {
+            int next = nextLine(buf, position, to);
+            int end = next;
+            if (end > position && buf[end - 1] == '\n') end--;
+            if (end > position && buf[end - 1] == '\r') end--;
+            if (end > position) parseRow(buf, position, end, line, sink);
+            position = next;
+            line++;
+        }
+        return line;
+    }
+
+    List<String> errors() {
+        List<String> errors = new ArrayList<>(errorLines.size());
+        for (int i = 0; i < errorLines.size(); i++) {
+            errors.add("line " + errorLines.get(i) + ": " + errorReasons.get(i));
+        }
+        return errors;
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    long badRows() {
+        return badRows;
+    }
+
+    private void parseRow(byte[] buf, int start, int end, long line, ShowtimeRowSink sink) {
+        int fields = splitFields(buf, start, end);
+        if (fields != FIELDS) {
+            reject(line, fields < 0 ? "unterminated quoted field" : "expected " + FIELDS + " fields but found " + fields);
+            return;
+        }
+        int totalSeats = parseInt(buf, 4);
+        int availableSeats = parseInt(buf, 5);
+        long priceCents = Money.parse(buf, fieldStart[6], fieldEnd[6]);
+        if (totalSeats < 0) { reject(line, badNumber(buf, 4)); return; }
+        if (availableSeats < 0) { reject(line, badNumber(buf, 5)); return; }
+        if (priceCents < 0) { reject(line, badNumber(buf, 6)); return; }
+        if (availableSeats > totalSeats) { reject(line, "Available Seats exceeds Total Seats"); return; }
+        if (!isDate(buf, 2)) { reject(line, "Date is not a valid yyyy-MM-dd date: '" + raw(buf, 2) + "'"); return; }
+        rows++;
+        sink.row(string(buf, 0), string(buf, 1), string(buf, 2), string(buf, 3), totalSeats, availableSeats,
+                priceCents, string(buf, 7), string(buf, 8));
+    }
+
+    /** Records where each field starts and ends, returns the field count or -1 for a broken quote */
+    private int splitFields(byte[] buf, int start, int end) {
+        int field = 0;
+        int position = start;
+        while (true) {
+            while (position < end && isBlank(buf[position])) position++;
+            boolean escaped = false;
+            int fieldFrom;
+            int fieldTo;
+            if (position < end && buf[position] == '"') {
+                fieldFrom = ++position;
+                while (true) {
+                    if (position >= end) return -1;
+                    if (buf[position] == '"') {
+                        if (position + 1 < end && buf[position + 1] == '"') {
+                            escaped = true;
+                            position += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    position++;
+                }
+                fieldTo = position++;
+                while (position < end && buf[position] != ',') position++;
+            }
+            else {
+                fieldFrom = position;
+                while (position < end && buf[position] != ',') position++;
+                fieldTo = position;
+                while (fieldTo > fieldFrom && isBlank(buf[fieldTo - 1])) fieldTo--;
+            }
+            if (field < FIELDS) {
+                fieldStart[field] = fieldFrom;
+                fieldEnd[field] = fieldTo;
+                fieldEscaped[field] = escaped;
+            }
+            field++;
+            if (position >= end) return field;
+            position++; // skip the comma
+        }
+    }
+
+    /** Non-negative int straight from the digits, -1 when the field is not a number */
+    private int parseInt(byte[] buf, int field) {
+        int from = fieldStart[field];
+        int to = fieldEnd[field];
+        if (from == to || to - from > 9) return -1;
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /** Strict yyyy-MM-dd check on the raw bytes, including month lengths and leap years */
+    private boolean isDate(byte[] buf, int field) {
+        int from = fieldStart[field];
+        if (fieldEnd[field] - from != 10 || buf[from + 4] != '-' || buf[from + 7] != '-') return false;
+        int year = digits(buf, from, 4);
+        int month = digits(buf, from + 5, 2);
+        int day = digits(buf, from + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1) return false;
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        int days = month == 2 ? (leap ? 29 : 28) : (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+        return day <= days;
+    }
+
+    private static int digits(byte[] buf, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private String string(byte[] buf, int field) {
+        int from = fieldStart[field];
+        int length = fieldEnd[field] - from;
+        if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        if (!fieldEscaped[field]) {
+            System.arraycopy(buf, from, scratch, 0, length);
+            return pool.intern(scratch, length);
+        }
+        int out = 0;
+        for (int i = from; i < from + length; i++) {
+            byte b = buf[i];
+            scratch[out++] = b;
+            if (b == '"') i++; // "" inside quotes stands for one quote
+        }
+        return pool.intern(scratch, out);
+    }
+
+    private String badNumber(byte[] buf, int field) {
+        return COLUMNS[field] + " is not a valid number: '" + raw(buf, field) + "'";
+    }
+
+    private String raw(byte[] buf, int field) {
+        return new String(buf, fieldStart[field], fieldEnd[field] - fieldStart[field], StandardCharsets.UTF_8);
+    }
+
+    private void reject(long line, String reason) {
+        badRows++;
+        if (errorLines.size() < MAX_REPORTED_ERRORS) {
+            errorLines.add(line);
+            errorReasons.add(reason);
+        }
+    }
+
+    /** First offset at or after position that starts a line */
+    private static long alignToLine(FileChannel channel, long position, long size) throws IOException {
+        if (position <= 0) return 0;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long offset = position - 1;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') return offset + i + 1;
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    private static int nextLine(byte[] buf, int position, int to) {
+        while (position < to && buf[position] != '\n') position++;
+        return position < to ? position + 1 : to;
+    }
+
+    private static int lastNewline(byte[] buf, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (buf[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /** One byte range parsed by its own parser, rows are held until the merge */
+    private static final class Chunk {
+        final ShowtimeCsvParser parser = new ShowtimeCsvParser();
+        final RowBuffer rows = new RowBuffer();
+        long lines;
+
+        static Chunk parse(FileChannel channel, long from, long to) {
+            Chunk chunk = new Chunk();
+            try {
+                chunk.lines = chunk.parser.parseRange(channel, from, to, 1, false, chunk.rows) - 1;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return chunk;
+        }
+    }
+
+    /** Column-wise holding area for parsed rows, replayed into the real sink in order */
+    private static final class RowBuffer implements ShowtimeRowSink {
+        private String[] strings = new String[6 * 1024];
+        private int[] seats = new int[2 * 1024];
+        private long[] prices = new long[1024];
+        private int size;
+
+        @Override
+        public void row(String code, String name, String date, String showtime, int totalSeats, int availableSeats,
+                        long priceCents, String language, String genre) {
+            if (size == prices.length) {
+                strings = Arrays.copyOf(strings, strings.length * 2);
+                seats = Arrays.copyOf(seats, seats.length * 2);
+                prices = Arrays.copyOf(prices, prices.length * 2);
+            }
+            int s = size * 6;
+            strings[s] = code;
+            strings[s + 1] = name;
+            strings[s + 2] = date;
+            strings[s + 3] = showtime;
+            strings[s + 4] = language;
+            strings[s + 5] = genre;
+            seats[size * 2] = totalSeats;
+            seats[size * 2 + 1] = availableSeats;
+            prices[size] = priceCents;
+            size++;
+        }
+
+        void replay(ShowtimeRowSink sink) {
+            for (int i = 0; i < size; i++) {
+                int s = i * 6;
+                sink.row(strings[s], strings[s + 1], strings[s + 2], strings[s + 3], seats[i * 2], seats[i * 2 + 1],
+                        prices[i], strings[s + 4], strings[s + 5]);
+            }
+        }
+    }
+
+    /** Open-addressing table that hands back one shared String per distinct byte sequence */
+    static final class StringPool {
+        private byte[][] keys = new byte[1024][];
+        private String[] values = new String[1024];
+        private int size;
+
+        String intern(byte[] bytes, int length) {
+            int mask = keys.length - 1;
+            int slot = hash(bytes, length) & mask;
+            while (keys[slot] != null) {
+                if (Arrays.equals(keys[slot], 0, keys[slot].length, bytes, 0, length)) return values[slot];
+                slot = (slot + 1) & mask;
+            }
+            byte[] key = Arrays.copyOf(bytes, length);
+            String value = new String(key, StandardCharsets.UTF_8);
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > keys.length) grow();
+            return value;
+        }
+
+        private void grow() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) continue;
+                int slot = hash(oldKeys[i], oldKeys[i].length) & mask;
+                while (keys[slot] != null) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+
+        private static int hash(byte[] bytes, int length) {
+            int h = 0x811c9dc5;
+            for (int i = 0; i < length; i++) h = (h ^ bytes[i]) * 0x01000193;
+            return h ^ (h >>> 16);
+        }
+    }
+}
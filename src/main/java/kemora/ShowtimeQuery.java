@@ -0,0 +1,79 @@
+package kemora;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/** What a kiosk is looking for, every filter is optional: "Sinhala comedies on 2025-04-02 under 10.00 with 4 seats together" */
+class ShowtimeQuery {
+    String language;
+    String genre;
+    int fromDay = Integer.MIN_VALUE;
+    int toDay = Integer.MAX_VALUE;
+    long minPriceCents = Long.MIN_VALUE;
+    long maxPriceCents = Long.MAX_VALUE;
+    int minSeats;
+
+    ShowtimeQuery language(String language) {
+        this.language = language;
+        return this;
+    }
+
+    ShowtimeQuery genre(String genre) {
+        this.genre = genre;
+        return this;
+    }
+
+    /** One date, yyyy-MM-dd */
+    ShowtimeQuery on(String date) {
+        return between(date, date);
+    }
+
+    /** Both dates included, yyyy-MM-dd */
+    ShowtimeQuery between(String from, String to) {
+        this.fromDay = (int) LocalDate.parse(from.trim()).toEpochDay();
+        this.toDay = (int) LocalDate.parse(to.trim()).toEpochDay();
+        return this;
+    }
+
+    /** Tickets costing at least this many cents */
+    ShowtimeQuery priceFrom(long cents) {
+        this.minPriceCents = cents;
+        return this;
+    }
+
+    /** Tickets costing less than this many cents */
+    ShowtimeQuery priceUnder(long cents) {
+        this.maxPriceCents = cents - 1;
+        return this;
+    }
+
+    /** Showtimes that still have this many seats left, read from the live counts */
+    ShowtimeQuery seatsLeft(int seats) {
+        this.minSeats = seats;
+        return this;
+    }
+
+    /** Builds a query from key=value filters: language, genre, date, to (last date), from and under (prices), seats */
+    static ShowtimeQuery parse(List<String> filters) {
+        ShowtimeQuery query = new ShowtimeQuery();
+        String date = null;
+        String to = null;
+        for (String filter : filters) {
+            int equals = filter.indexOf('=');
+            String key = equals < 0 ? filter : filter.substring(0, equals);
+            String value = equals < 0 ? "" : filter.substring(equals + 1);
+            switch (key) {
+                case "language": query.language(value); break;
+                case "genre": query.genre(value); break;
+                case "date": date = value; break;
+                case "to": to = value; break;
+                case "from": query.priceFrom(Money.parse(value)); break;
+                case "under": query.priceUnder(Money.parse(value)); break;
+                case "seats": query.seatsLeft(Integer.parseInt(value)); break;
+                default: throw new IllegalArgumentException("unknown search filter " + filter);
+            }
+        }
+        if (date != null) query.between(date, to == null ? date : to);
+        return query;
+    }
+}
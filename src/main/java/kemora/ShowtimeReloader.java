@@ -0,0 +1,125 @@
+package kemora;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/** Watches the showtime CSV and swaps in a freshly built catalog while sales go on */
+/** the new store is built in the background, takes over the live seat counts row by row, then one volatile write publishes it */
+class ShowtimeReloader implements Runnable {
+    private final Path file;
+    private final Supplier<ShowtimeCatalog> current;
+    private final Consumer<ShowtimeCatalog> publish;
+    private final PrintStream out;
+    private final long quietMillis;
+
+    // timings of the last reload, for the benchmarks and the log line
+    volatile long lastBuildNanos;
+    volatile long lastHandOverNanos;
+    volatile long lastSwapNanos;
+
+    ShowtimeReloader(Path file, Supplier<ShowtimeCatalog> current, Consumer<ShowtimeCatalog> publish, PrintStream out, long quietMillis) {
+        this.file = file.toAbsolutePath();
+        this.current = current;
+        this.publish = publish;
+        this.out = out;
+        this.quietMillis = quietMillis;
+    }
+
+    /** Starts watching on a daemon thread */
+    Thread start() {
+        Thread thread = new Thread(this, "showtime-reloader");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Override
+    public void run() {
+        try (WatchService watcher = file.getFileSystem().newWatchService()) {
+            file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = touchesFile(key);
+                // editors and copies write in several steps, wait until the file has been quiet for a while
+                while (changed) {
+                    WatchKey more = watcher.poll(quietMillis, TimeUnit.MILLISECONDS);
+                    if (more == null) break;
+                    touchesFile(more);
+                }
+                if (changed) reload();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException | ClosedWatchServiceException e) {
+            out.println("Error watching " + file + ": " + e.getMessage());
+        }
+    }
+
+    private boolean touchesFile(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path && file.getFileName().equals(event.context())) changed = true;
+        }
+        key.reset();
+        return changed;
+    }
+
+    /** Builds the new catalog, hands the live counts over and publishes it, keeping the old one if the file cannot be read */
+    boolean reload() {
+        long start = System.nanoTime();
+        ShowtimeStore store;
+        try {
+            // the new rows are snapshotted too, so a restart after the change starts from them
+            store = MovieTicketReservationGroup_KeMora.parseShowtimes(file, out);
+        }
+        catch (IOException e) {
+            out.println("Error reloading movies, keeping the current schedule: " + e.getMessage());
+            return false;
+        }
+        ShowtimeCatalog next = ShowtimeCatalog.build(store);
+        ShowtimeCatalog old = current.get();
+        // kiosks already searching should not pay for the new indexes on their next query
+        if (old.hasSearch()) next.search();
+        int[] forward = forwardRows(old, next);
+        long built = System.nanoTime();
+
+        if (!old.store().handOver(next.store(), forward)) {
+            out.println("Error reloading movies, keeping the current schedule: the file drops showtimes that have sold seats since they were loaded");
+            return false;
+        }
+        long handedOver = System.nanoTime();
+        publish.accept(next);
+        long swapped = System.nanoTime();
+
+        lastBuildNanos = built - start;
+        lastHandOverNanos = handedOver - built;
+        lastSwapNanos = swapped - handedOver;
+        out.printf("Reloaded %d showtimes in %.1f ms (hand-over %.1f ms)%n", next.size(), (swapped - start) / 1e6, lastHandOverNanos / 1e6);
+        return true;
+    }
+
+    /** Matches every old row to the new row with the same code, date and showtime, -1 where the new file dropped it */
+    static int[] forwardRows(ShowtimeCatalog old, ShowtimeCatalog next) {
+        ShowtimeStore store = old.store();
+        int[] forward = new int[store.size()];
+        boolean[] claimed = new boolean[next.size()];
+        for (int row = 0; row < forward.length; row++) {
+            Movie match = next.find(store.code(row), store.date(row), store.showtime(row));
+            // a duplicated row in the old file only hands over once
+            if (match == null || claimed[match.row]) {
+                forward[row] = -1;
+            }
+            else {
+                forward[row] = match.row;
+                claimed[match.row] = true;
+            }
+        }
+        return forward;
+    }
+}
@@ -0,0 +1,7 @@
+package kemora;
+
+/** Receives one parsed showtime row, the strings are already interned by the parser */
+interface ShowtimeRowSink {
+    void row(String code, String name, String date, String showtime, int totalSeats, int availableSeats,
+             long priceCents, String language, String genre);
+}
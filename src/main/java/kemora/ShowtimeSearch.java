@@ -0,0 +1,306 @@
+package kemora;
+
+import java.util.*;
+
+/** Filtered, paginated search over one catalog for the kiosks */
+/** the rows are sorted by date and by price inside each date, so a date and price range is one slice per day already in result order */
+/** each language and genre value has a bitmap and the list of its positions in that order, the live seat count is checked last */
+/** a query walks whichever of the slices and position lists holds the fewest candidates, or sorts the rows of a small bitmap */
+class ShowtimeSearch {
+    // collecting and sorting the matches is only worth it while they are this few
+    private static final int MAX_COLLECT = 1 << 16;
+
+    /** One page of results in date, price, row order, with the cursor to ask for the next page or -1 at the end */
+    static final class Page {
+        final List<Movie> showtimes;
+        final int next;
+
+        Page(List<Movie> showtimes, int next) {
+            this.showtimes = showtimes;
+            this.next = next;
+        }
+    }
+
+    /** The rows having one language or genre, as a bitmap by row and as ascending positions in rowsByDate */
+    private static final class Category {
+        final long[] bits;
+        final int[] positions;
+
+        Category(long[] bits, int[] positions) {
+            this.bits = bits;
+            this.positions = positions;
+        }
+    }
+
+    private static final Page EMPTY = new Page(Collections.emptyList(), -1);
+
+    private final ShowtimeStore store;
+    private final int size;
+    private final int firstDay;
+    private final int[] dayStart;
+    private final int[] rowsByDate;
+    private final Category[] languages;
+    private final Category[] genres;
+
+    private ShowtimeSearch(ShowtimeStore store) {
+        this.store = store;
+        this.size = store.size();
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+        for (int row = 0; row < size; row++) {
+            minDay = Math.min(minDay, store.epochDay(row));
+            maxDay = Math.max(maxDay, store.epochDay(row));
+        }
+        firstDay = size == 0 ? 0 : minDay;
+        int days = size == 0 ? 0 : maxDay - minDay + 1;
+
+        dayStart = new int[days + 1];
+        int longestDay = 0;
+        for (int row = 0; row < size; row++) dayStart[store.epochDay(row) - firstDay + 1]++;
+        for (int day = 0; day < days; day++) {
+            longestDay = Math.max(longestDay, dayStart[day + 1]);
+            dayStart[day + 1] += dayStart[day];
+        }
+        int[] fill = Arrays.copyOf(dayStart, days);
+        rowsByDate = new int[size];
+        for (int row = 0; row < size; row++) rowsByDate[fill[store.epochDay(row) - firstDay]++] = row;
+        // each day was filled in row order, a stable sort by price keeps CSV order between equal prices
+        int[] scratch = new int[longestDay];
+        for (int day = 0; day < days; day++) sortByPrice(dayStart[day], dayStart[day + 1], scratch);
+
+        languages = categories(store.languages().size(), true);
+        genres = categories(store.genres().size(), false);
+    }
+
+    /** One category per dictionary id, filled in date order so the position lists come out sorted */
+    private Category[] categories(int count, boolean language) {
+        int[] sizes = new int[count];
+        for (int row = 0; row < size; row++) sizes[id(row, language)]++;
+        Category[] categories = new Category[count];
+        for (int id = 0; id < count; id++) categories[id] = new Category(new long[(size + 63) >>> 6], new int[sizes[id]]);
+        int[] fill = new int[count];
+        for (int position = 0; position < size; position++) {
+            int row = rowsByDate[position];
+            Category category = categories[id(row, language)];
+            category.bits[row >>> 6] |= 1L << row;
+            category.positions[fill[id(row, language)]++] = position;
+        }
+        return categories;
+    }
+
+    private int id(int row, boolean language) {
+        return language ? store.languageId(row) : store.genreId(row);
+    }
+
+    static ShowtimeSearch build(ShowtimeStore store) {
+        return new ShowtimeSearch(store);
+    }
+
+    /** Merge sorts rowsByDate from from to to by price, rows of one price keep the order they came in, any price a long holds */
+    private void sortByPrice(int from, int to, int[] scratch) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        sortByPrice(from, mid, scratch);
+        sortByPrice(mid, to, scratch);
+        if (store.priceCents(rowsByDate[mid - 1]) <= store.priceCents(rowsByDate[mid])) return;
+        int left = mid - from;
+        System.arraycopy(rowsByDate, from, scratch, 0, left);
+        int i = 0;
+        int j = mid;
+        int k = from;
+        while (i < left && j < to) {
+            rowsByDate[k++] = store.priceCents(rowsByDate[j]) < store.priceCents(scratch[i]) ? rowsByDate[j++] : scratch[i++];
+        }
+        while (i < left) rowsByDate[k++] = scratch[i++];
+    }
+
+    /** Up to limit showtimes matching the query, starting at 0 or at the cursor of the previous page */
+    /** the cursor is a position in date order, so paging stays in step even when seats sell out between pages */
+    Page search(ShowtimeQuery query, int cursor, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be at least 1 but was " + limit);
+        long started = Metrics.sample();
+        Page page = answer(query, cursor, limit);
+        Metrics.SEARCH.since(started);
+        return page;
+    }
+
+    private Page answer(ShowtimeQuery query, int cursor, int limit) {
+        Category language = query.language == null ? null : find(store.languages(), languages, query.language);
+        Category genre = query.genre == null ? null : find(store.genres(), genres, query.genre);
+        if ((query.language != null && language == null) || (query.genre != null && genre == null)) return EMPTY;
+        long[] categories = language == null ? (genre == null ? null : genre.bits)
+                : genre == null ? language.bits : and(language.bits, genre.bits);
+        int categoryCount = categories == null ? size : cardinality(categories);
+        if (categoryCount == 0) return EMPTY;
+
+        // the price range of every day in the date range
+        int firstSlice = (int) Math.max(0, (long) query.fromDay - firstDay);
+        int lastSlice = (int) Math.min(dayStart.length - 2, (long) query.toDay - firstDay);
+        int slices = Math.max(0, lastSlice - firstSlice + 1);
+        int[] from = new int[slices];
+        int[] to = new int[slices];
+        long candidates = 0;
+        for (int i = 0; i < slices; i++) {
+            int day = firstSlice + i;
+            from[i] = pricePosition(dayStart[day], dayStart[day + 1], query.minPriceCents);
+            to[i] = query.maxPriceCents == Long.MAX_VALUE ? dayStart[day + 1]
+                    : pricePosition(from[i], dayStart[day + 1], query.maxPriceCents + 1);
+            candidates += to[i] - from[i];
+        }
+        if (candidates == 0) return EMPTY;
+
+        // a position list may hold fewer rows inside the slices than the slices themselves
+        int[] driver = null;
+        for (Category category : new Category[] {language, genre}) {
+            if (category == null) continue;
+            long inside = 0;
+            for (int i = 0; i < slices; i++) {
+                inside += lowerBound(category.positions, to[i]) - lowerBound(category.positions, from[i]);
+            }
+            if (inside < candidates) {
+                candidates = inside;
+                driver = category.positions;
+            }
+        }
+        if (candidates == 0) return EMPTY;
+
+        // the walk stops once the page is full, a few matching rows are cheaper to gather and sort than to walk to
+        double walk = Math.min(candidates, (limit + 1.0) * size / categoryCount);
+        if (categoryCount <= MAX_COLLECT && categoryCount < walk) return collect(query, categories, cursor, limit);
+        long budget = categoryCount <= MAX_COLLECT ? 2L * categoryCount : Long.MAX_VALUE;
+        Page page = walk(query, categories, driver, from, to, cursor, limit, budget);
+        // the matches lie away from the dates and prices asked for, gather them after all
+        return page != null ? page : collect(query, categories, cursor, limit);
+    }
+
+    /** Walks the slices in result order, through the driver's positions if it has one, null once more than budget rows were looked at */
+    private Page walk(ShowtimeQuery query, long[] categories, int[] driver, int[] from, int[] to, int cursor, int limit, long budget) {
+        List<Movie> page = new ArrayList<>(Math.min(limit, 64));
+        for (int slice = 0; slice < from.length; slice++) {
+            int start = Math.max(from[slice], cursor);
+            int end = to[slice];
+            if (driver != null) {
+                start = lowerBound(driver, start);
+                end = lowerBound(driver, end);
+            }
+            for (int i = start; i < end; i++) {
+                if (--budget < 0) return null;
+                int position = driver == null ? i : driver[i];
+                int row = rowsByDate[position];
+                // date and price are in range by position, only the bitmap and the live count are left to check
+                if (categories != null && (categories[row >>> 6] & 1L << row) == 0) continue;
+                if (query.minSeats > 0 && store.availableSeats(row) < query.minSeats) continue;
+                if (page.size() == limit) return new Page(page, position);
+                page.add(store.movie(row));
+            }
+        }
+        return new Page(page, -1);
+    }
+
+    /** Gathers the few rows of the category bitmap, sorts them into date order and cuts the page out */
+    private Page collect(ShowtimeQuery query, long[] categories, int cursor, int limit) {
+        int[] positions = new int[64];
+        int found = 0;
+        for (int word = 0; word < categories.length; word++) {
+            for (long bits = categories[word]; bits != 0; bits &= bits - 1) {
+                int row = word << 6 | Long.numberOfTrailingZeros(bits);
+                if (!matches(query, row)) continue;
+                int position = datePosition(row);
+                if (position < cursor) continue;
+                if (found == positions.length) positions = Arrays.copyOf(positions, found * 2);
+                positions[found++] = position;
+            }
+        }
+        Arrays.sort(positions, 0, found);
+        int end = Math.min(found, limit);
+        List<Movie> page = new ArrayList<>(end);
+        for (int i = 0; i < end; i++) page.add(store.movie(rowsByDate[positions[i]]));
+        return new Page(page, end < found ? positions[end] : -1);
+    }
+
+    /** Position of the row in rowsByDate, found by its price and then its row number inside its day */
+    private int datePosition(int row) {
+        int day = store.epochDay(row) - firstDay;
+        long cents = store.priceCents(row);
+        int low = dayStart[day];
+        int high = dayStart[day + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int probe = rowsByDate[mid];
+            long probeCents = store.priceCents(probe);
+            if (probeCents < cents || (probeCents == cents && probe < row)) low = mid + 1;
+            else if (probe != row) high = mid - 1;
+            else return mid;
+        }
+        throw new IllegalStateException("row " + row + " missing from the date index");
+    }
+
+    private boolean matches(ShowtimeQuery query, int row) {
+        int day = store.epochDay(row);
+        if (day < query.fromDay || day > query.toDay) return false;
+        long cents = store.priceCents(row);
+        if (cents < query.minPriceCents || cents > query.maxPriceCents) return false;
+        return query.minSeats <= 0 || store.availableSeats(row) >= query.minSeats;
+    }
+
+    /** First position between from and to whose price is at or above the given cents, a day's slice is sorted by price */
+    private int pricePosition(int from, int to, long cents) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (store.priceCents(rowsByDate[mid]) < cents) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /** Index of the first value at or above the key in an ascending array */
+    private static int lowerBound(int[] values, int key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /** The category with this value ignoring case, or null when no row has it */
+    private Category find(StringDictionary dictionary, Category[] categories, String value) {
+        String wanted = value.trim();
+        Category found = null;
+        for (int id = 0; id < dictionary.size(); id++) {
+            if (!dictionary.value(id).equalsIgnoreCase(wanted)) continue;
+            // "Comedy" and "comedy" are separate dictionary values but one genre to a customer
+            found = found == null ? categories[id] : merge(found, categories[id]);
+        }
+        return found;
+    }
+
+    private static Category merge(Category a, Category b) {
+        long[] bits = new long[a.bits.length];
+        for (int i = 0; i < bits.length; i++) bits[i] = a.bits[i] | b.bits[i];
+        int[] positions = new int[a.positions.length + b.positions.length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < positions.length; k++) {
+            positions[k] = j == b.positions.length || (i < a.positions.length && a.positions[i] < b.positions[j])
+                    ? a.positions[i++] : b.positions[j++];
+        }
+        return new Category(bits, positions);
+    }
+
+    private static long[] and(long[] a, long[] b) {
+        long[] both = new long[a.length];
+        for (int i = 0; i < a.length; i++) both[i] = a[i] & b[i];
+        return both;
+    }
+
+    private static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) count += Long.bitCount(word);
+        return count;
+    }
+}
@@ -0,0 +1,273 @@
+package kemora;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/** Versioned binary copy of a parsed showtime CSV, so a restart maps one file instead of parsing text */
+/** layout: header, the dictionaries, one block per column in row order, then a CRC32C of everything before it */
+/** the header records the CSV's size and modification time, a snapshot that no longer matches them is ignored and rewritten */
+/** -Dkemora.snapshot=false turns snapshots off */
+class ShowtimeSnapshot {
+    static final int MAGIC = 0x4B4D5348; // "KMSH"
+    static final int VERSION = 1;
+    private static final int HEADER = 4 * 6 + 8 * 2;
+    private static final int BLOCK = 1 << 20;
+
+    private final Path csv;
+    private final Path file;
+    // a shard keeps only its own rows, so its snapshot is only good for the same shard of the same ring
+    private final int shardIndex;
+    private final int shardCount;
+
+    ShowtimeSnapshot(Path csv, Path file, int shardIndex, int shardCount) {
+        this.csv = csv;
+        this.file = file;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    /** The snapshot next to the CSV, one per shard, or null when snapshots are turned off */
+    static ShowtimeSnapshot forDataset(Path csv, ShardRing ring, int shard) {
+        if ("false".equals(System.getProperty("kemora.snapshot"))) return null;
+        String name = csv.getFileName() + (ring == null ? "" : ".shard-" + shard + "-of-" + ring.shards()) + ".snapshot";
+        return new ShowtimeSnapshot(csv, csv.resolveSibling(name), ring == null ? 0 : shard, ring == null ? 0 : ring.shards());
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /** Size and modification time of the CSV, taken before it is parsed so a change during the parse makes the snapshot stale */
+    long[] stamp() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(csv, BasicFileAttributes.class);
+        return new long[] {attributes.size(), attributes.lastModifiedTime().toMillis()};
+    }
+
+    /** The store as the snapshot holds it, null when there is none or it no longer matches the CSV */
+    ShowtimeStore load(PrintStream out) {
+        if (!Files.isRegularFile(file)) return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER + 8 || size > Integer.MAX_VALUE) return corrupt(out, "wrong size " + size);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (in.getInt() != MAGIC) return corrupt(out, "not a showtime snapshot");
+            // another version or a different rounding gives different columns, the CSV is read again
+            if (in.getInt() != VERSION || in.getInt() != Money.ROUNDING.ordinal()) return null;
+            if (in.getInt() != shardIndex || in.getInt() != shardCount) return null;
+            int rows = in.getInt();
+            long[] stamp = stamp();
+            if (in.getLong() != stamp[0] || in.getLong() != stamp[1]) return null;
+
+            CRC32C crc = new CRC32C();
+            crc.update(in.duplicate().position(0).limit((int) size - 8));
+            if (crc.getValue() != in.getLong((int) size - 8)) return corrupt(out, "checksum mismatch");
+
+            ShowtimeStore.Builder b = new ShowtimeStore.Builder();
+            for (StringDictionary dictionary : new StringDictionary[] {b.codes, b.names, b.showtimes, b.languages, b.genres}) {
+                int count = in.getInt();
+                for (int id = 0; id < count; id++) {
+                    if (dictionary.id(string(in)) != id) return corrupt(out, "repeated dictionary value");
+                }
+            }
+            int dates = in.getInt();
+            for (int i = 0; i < dates; i++) {
+                int day = in.getInt();
+                String text = string(in);
+                b.dateDays.put(text, day);
+                b.dateText.put(day, text);
+            }
+            b.size = rows;
+            b.code = ints(in, rows);
+            b.name = ints(in, rows);
+            b.epochDay = ints(in, rows);
+            b.showtime = shorts(in, rows);
+            b.language = shorts(in, rows);
+            b.genre = shorts(in, rows);
+            b.totalSeats = ints(in, rows);
+            b.availableSeats = ints(in, rows);
+            b.priceCents = longs(in, rows);
+            if (in.position() != size - 8) return corrupt(out, "columns do not fill the file");
+            return b.build();
+        }
+        catch (IOException | RuntimeException e) {
+            return corrupt(out, e.toString());
+        }
+    }
+
+    private ShowtimeStore corrupt(PrintStream out, String reason) {
+        out.println("Error reading showtime snapshot " + file + ", reading the CSV instead: " + reason);
+        return null;
+    }
+
+    /** Writes the parsed rows next to the CSV, through a temporary file so a crash never leaves half a snapshot */
+    void write(ShowtimeStore.Builder b, long[] stamp, PrintStream out) {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Output output = new Output(channel);
+                output.putInt(MAGIC);
+                output.putInt(VERSION);
+                output.putInt(Money.ROUNDING.ordinal());
+                output.putInt(shardIndex);
+                output.putInt(shardCount);
+                output.putInt(b.size);
+                output.putLong(stamp[0]);
+                output.putLong(stamp[1]);
+                for (StringDictionary dictionary : new StringDictionary[] {b.codes, b.names, b.showtimes, b.languages, b.genres}) {
+                    output.putInt(dictionary.size());
+                    for (int id = 0; id < dictionary.size(); id++) output.putString(dictionary.value(id));
+                }
+                output.putInt(b.dateText.size());
+                for (Map.Entry<Integer, String> date : b.dateText.entrySet()) {
+                    output.putInt(date.getKey());
+                    output.putString(date.getValue());
+                }
+                output.putInts(b.code, b.size);
+                output.putInts(b.name, b.size);
+                output.putInts(b.epochDay, b.size);
+                output.putShorts(b.showtime, b.size);
+                output.putShorts(b.language, b.size);
+                output.putShorts(b.genre, b.size);
+                output.putInts(b.totalSeats, b.size);
+                output.putInts(b.availableSeats, b.size);
+                output.putLongs(b.priceCents, b.size);
+                output.finish();
+                channel.force(true);
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e) {
+            out.println("Error writing showtime snapshot " + file + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(temporary);
+            }
+            catch (IOException ignored) {
+                // the next write truncates it anyway
+            }
+        }
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int[] ints(ByteBuffer in, int rows) {
+        int[] column = new int[rows];
+        in.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(column);
+        in.position(in.position() + rows * 4);
+        return column;
+    }
+
+    private static short[] shorts(ByteBuffer in, int rows) {
+        short[] column = new short[rows];
+        in.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(column);
+        in.position(in.position() + rows * 2);
+        return column;
+    }
+
+    private static long[] longs(ByteBuffer in, int rows) {
+        long[] column = new long[rows];
+        in.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(column);
+        in.position(in.position() + rows * 8);
+        return column;
+    }
+
+    /** Buffered little-endian writer that checksums every byte it passes to the channel */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            room(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            room(8);
+            buffer.putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int from = 0; from < bytes.length; ) {
+                room(1);
+                int length = Math.min(buffer.remaining(), bytes.length - from);
+                buffer.put(bytes, from, length);
+                from += length;
+            }
+        }
+
+        void putInts(int[] column, int rows) throws IOException {
+            for (int from = 0; from < rows; ) {
+                room(4);
+                int length = Math.min(buffer.remaining() / 4, rows - from);
+                buffer.asIntBuffer().put(column, from, length);
+                buffer.position(buffer.position() + length * 4);
+                from += length;
+            }
+        }
+
+        void putShorts(short[] column, int rows) throws IOException {
+            for (int from = 0; from < rows; ) {
+                room(2);
+                int length = Math.min(buffer.remaining() / 2, rows - from);
+                buffer.asShortBuffer().put(column, from, length);
+                buffer.position(buffer.position() + length * 2);
+                from += length;
+            }
+        }
+
+        void putLongs(long[] column, int rows) throws IOException {
+            for (int from = 0; from < rows; ) {
+                room(8);
+                int length = Math.min(buffer.remaining() / 8, rows - from);
+                buffer.asLongBuffer().put(column, from, length);
+                buffer.position(buffer.position() + length * 8);
+                from += length;
+            }
+        }
+
+        /** Writes out the checksum last, it covers everything written before it */
+        void finish() throws IOException {
+            flush();
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+
+        private void room(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package kemora;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Columnar seat inventory: one primitive array per CSV column instead of one object per showtime */
+/** text columns are dictionary encoded, dates are epoch days and seat counts are changed with a CAS on the array slot */
+class ShowtimeStore {
+    private static final VarHandle SEATS = MethodHandles.arrayElementVarHandle(int[].class);
+    // seat count markers used while a reloaded schedule takes over, real counts are never negative
+    private static final int PENDING = Integer.MIN_VALUE;
+    private static final int RETIRED = Integer.MIN_VALUE + 1;
+
+    private final StringDictionary codes;
+    private final StringDictionary names;
+    private final StringDictionary showtimes;
+    private final StringDictionary languages;
+    private final StringDictionary genres;
+    private final String[] dateText; // indexed by epoch day - firstDay
+    private final int firstDay;
+
+    private final int size;
+    private final int[] code;
+    private final int[] name;
+    private final int[] epochDay;
+    private final short[] showtime;
+    private final short[] language;
+    private final short[] genre;
+    private final int[] totalSeats;
+    private final int[] availableSeats;
+    private final int[] loadedAvailable; // as read from the CSV, so a reload can tell what was sold since
+    private final long[] priceCents;
+    // only showtimes that have been booked get a seat map
+    private final ConcurrentHashMap<Integer, SeatMap> seatMaps = new ConcurrentHashMap<>();
+    // set once a reloaded schedule replaces this one, forward maps each row to its row there or -1
+    private volatile ShowtimeStore successor;
+    private int[] forward;
+    // seats sold and revenue per movie, date, language and genre, moved along with every count change
+    private final SalesAggregates sales;
+
+    private ShowtimeStore(Builder b) {
+        this.codes = b.codes;
+        this.names = b.names;
+        this.showtimes = b.showtimes;
+        this.languages = b.languages;
+        this.genres = b.genres;
+        this.firstDay = b.dateText.keySet().stream().min(Integer::compare).orElse(0);
+        int lastDay = b.dateText.keySet().stream().max(Integer::compare).orElse(-1);
+        this.dateText = new String[lastDay - firstDay + 1];
+        b.dateText.forEach((day, text) -> dateText[day - firstDay] = text);
+        this.size = b.size;
+        // a column that is already exactly full, as a snapshot's are, is taken over rather than copied
+        this.code = trimmed(b.code, size);
+        this.name = trimmed(b.name, size);
+        this.epochDay = trimmed(b.epochDay, size);
+        this.showtime = trimmed(b.showtime, size);
+        this.language = trimmed(b.language, size);
+        this.genre = trimmed(b.genre, size);
+        this.totalSeats = trimmed(b.totalSeats, size);
+        this.availableSeats = Arrays.copyOf(b.availableSeats, size);
+        this.loadedAvailable = trimmed(b.availableSeats, size);
+        this.priceCents = trimmed(b.priceCents, size);
+        this.sales = new SalesAggregates(this);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // the builder grows a full column before writing to it again, so a column handed over here is never changed under us
+    private static int[] trimmed(int[] column, int size) {
+        return column.length == size ? column : Arrays.copyOf(column, size);
+    }
+
+    private static short[] trimmed(short[] column, int size) {
+        return column.length == size ? column : Arrays.copyOf(column, size);
+    }
+
+    private static long[] trimmed(long[] column, int size) {
+        return column.length == size ? column : Arrays.copyOf(column, size);
+    }
+
+    Movie movie(int row) {
+        return new Movie(this, row);
+    }
+
+    String code(int row) {
+        return codes.value(code[row]);
+    }
+
+    String name(int row) {
+        return names.value(name[row]);
+    }
+
+    String date(int row) {
+        return dateText[epochDay[row] - firstDay];
+    }
+
+    int epochDay(int row) {
+        return epochDay[row];
+    }
+
+    int firstDay() {
+        return firstDay;
+    }
+
+    /** Days from the first date to the last, both included */
+    int days() {
+        return dateText.length;
+    }
+
+    String showtime(int row) {
+        return showtimes.value(showtime[row]);
+    }
+
+    String language(int row) {
+        return languages.value(language[row]);
+    }
+
+    String genre(int row) {
+        return genres.value(genre[row]);
+    }
+
+    int totalSeats(int row) {
+        return totalSeats[row];
+    }
+
+    /** Live count, read through to the reloaded schedule once this row has been handed over */
+    int availableSeats(int row) {
+        while (true) {
+            int available = (int) SEATS.getVolatile(availableSeats, row);
+            if (available >= 0) return available;
+            if (available == RETIRED) {
+                int to = forward[row];
+                return to < 0 ? 0 : successor.availableSeats(to);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /** The count the CSV gave, what was sold since is this minus the live count */
+    int loadedAvailableSeats(int row) {
+        return loadedAvailable[row];
+    }
+
+    /** Ticket price in cents, see Money */
+    long priceCents(int row) {
+        return priceCents[row];
+    }
+
+    int codeId(int row) {
+        return code[row];
+    }
+
+    int languageId(int row) {
+        return language[row];
+    }
+
+    int genreId(int row) {
+        return genre[row];
+    }
+
+    /** Takes the seats if they are all still free, false otherwise or when the row has been handed over */
+    boolean tryReserve(int row, int tickets) {
+        while (true) {
+            int available = (int) SEATS.getVolatile(availableSeats, row);
+            if (available == PENDING) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (tickets > available) return false;
+            if (SEATS.compareAndSet(availableSeats, row, available, available - tickets)) {
+                sales.sold(row, tickets);
+                return true;
+            }
+            Metrics.count(Metrics.RESERVE_RETRIES, 1);
+        }
+    }
+
+    /** The seat map of a showtime, made on first use from the seats the count says are already sold */
+    SeatMap seatMap(int row) {
+        SeatMap seatMap = seatMaps.get(row);
+        if (seatMap != null) return seatMap;
+        // a hand-over puts the carried map in before it writes the count, so wait for the count outside the map's lock
+        availableSeats(row);
+        return seatMaps.computeIfAbsent(row, r -> new SeatMap(totalSeats[r], totalSeats[r] - availableSeats(r)));
+    }
+
+    /** Applies a journaled booking at startup: takes the count and marks the seats it names, false if they no longer fit */
+    /** a record from before seats were journaled names none, its tickets are placed once the showtime has a map */
+    boolean replay(int row, int tickets, int[] seats) {
+        SeatMap seatMap = seats.length > 0 ? seatMap(row) : seatMaps.get(row);
+        if (!tryReserve(row, tickets)) return false;
+        if (seatMap != null) {
+            seatMap.take(seats);
+            seatMap.place(tickets - seats.length);
+        }
+        return true;
+    }
+
+    /** Puts seats back, never above the hall size, false when the row has been handed over */
+    boolean release(int row, int tickets) {
+        while (true) {
+            int available = (int) SEATS.getVolatile(availableSeats, row);
+            if (available == RETIRED) return false;
+            if (available == PENDING) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int restored = Math.min(totalSeats[row], available + tickets);
+            if (SEATS.compareAndSet(availableSeats, row, available, restored)) {
+                if (restored != available) sales.sold(row, available - restored);
+                return true;
+            }
+        }
+    }
+
+    /** True once the row's count lives in a reloaded schedule */
+    boolean isRetired(int row) {
+        return (int) SEATS.getVolatile(availableSeats, row) == RETIRED;
+    }
+
+    /** The same showtime in the schedule that replaced this one, null if the reload dropped it */
+    Movie forwarded(int row) {
+        int to = forward[row];
+        return to < 0 ? null : successor.movie(to);
+    }
+
+    /** Moves the live counts and seat maps into a reloaded schedule while sales go on */
+    /** rows are frozen one at a time, a booking that meets a frozen row follows it to the new row, which is only */
+    /** blocked for the few instructions between freezing the old slot and writing the new one */
+    /** refused, with nothing changed, when the new file drops a showtime that sold or gave back seats since it was loaded: */
+    /** a file caught half written would otherwise retire those sales and bring the row back later at the file's count */
+    boolean handOver(ShowtimeStore next, int[] forward) {
+        // dropped rows are held first, bookings and releases on them wait rather than slip in behind the check
+        int[] dropped = new int[size];
+        boolean sales = false;
+        for (int row = 0; row < size; row++) {
+            if (forward[row] >= 0) continue;
+            dropped[row] = (int) SEATS.getAndSet(availableSeats, row, PENDING);
+            if (dropped[row] != loadedAvailable[row]) sales = true;
+        }
+        if (sales) {
+            for (int row = 0; row < size; row++) {
+                if (forward[row] < 0) SEATS.setVolatile(availableSeats, row, dropped[row]);
+            }
+            return false;
+        }
+        this.forward = forward;
+        this.successor = next;
+        for (int row = 0; row < size; row++) {
+            int to = forward[row];
+            if (to < 0) {
+                SEATS.setVolatile(availableSeats, row, RETIRED);
+                continue;
+            }
+            // a booking that reaches the new row waits until its seat map and count are both there
+            SEATS.setVolatile(next.availableSeats, to, PENDING);
+            int live = (int) SEATS.getAndSet(availableSeats, row, RETIRED);
+            // whatever was sold or held since the old file was read stays sold in the new one
+            int taken = loadedAvailable[row] - live;
+            int carried = Math.max(0, Math.min(next.totalSeats[to], next.loadedAvailable[to] - taken));
+            // every booking that took the old count made the map first, so it is found here now the count is frozen
+            SeatMap seatMap = seatMaps.get(row);
+            if (seatMap != null) {
+                if (totalSeats[row] == next.totalSeats[to]) {
+                    // the new file can only give back or sell seats no booking names, bookings still claiming share this map
+                    if (carried > live) carried = live + seatMap.freePlaced(carried - live);
+                    else if (carried < live) seatMap.place(live - carried);
+                }
+                else {
+                    seatMap = seatMap.resized(next.totalSeats[to], carried);
+                    carried = Math.min(carried, seatMap.freeSeats());
+                }
+                next.seatMaps.put(to, seatMap);
+            }
+            SEATS.setVolatile(next.availableSeats, to, carried);
+            // the new schedule's sales started from its CSV, the carried count is what it really sold
+            if (carried != next.loadedAvailable[to]) next.sales.sold(to, next.loadedAvailable[to] - carried);
+        }
+        return true;
+    }
+
+    SalesAggregates sales() {
+        return sales;
+    }
+
+    StringDictionary codes() {
+        return codes;
+    }
+
+    StringDictionary languages() {
+        return languages;
+    }
+
+    StringDictionary genres() {
+        return genres;
+    }
+
+    /** Collects parsed rows into growable columns, dictionary encoding the text as it goes */
+    static final class Builder implements ShowtimeRowSink {
+        final StringDictionary codes = new StringDictionary();
+        final StringDictionary names = new StringDictionary();
+        final StringDictionary showtimes = new StringDictionary();
+        final StringDictionary languages = new StringDictionary();
+        final StringDictionary genres = new StringDictionary();
+        final Map<String, Integer> dateDays = new HashMap<>();
+        final Map<Integer, String> dateText = new HashMap<>();
+
+        int size;
+        int[] code = new int[1024];
+        int[] name = new int[1024];
+        int[] epochDay = new int[1024];
+        short[] showtime = new short[1024];
+        short[] language = new short[1024];
+        short[] genre = new short[1024];
+        int[] totalSeats = new int[1024];
+        int[] availableSeats = new int[1024];
+        long[] priceCents = new long[1024];
+
+        @Override
+        public void row(String code, String name, String date, String showtime, int totalSeats, int availableSeats,
+                        long priceCents, String language, String genre) {
+            if (size == this.code.length) grow();
+            this.code[size] = codes.id(code);
+            this.name[size] = names.id(name);
+            this.epochDay[size] = epochDay(date);
+            this.showtime[size] = smallId(showtimes, showtime);
+            this.language[size] = smallId(languages, language);
+            this.genre[size] = smallId(genres, genre);
+            this.totalSeats[size] = totalSeats;
+            this.availableSeats[size] = availableSeats;
+            this.priceCents[size] = priceCents;
+            size++;
+        }
+
+        ShowtimeStore build() {
+            return new ShowtimeStore(this);
+        }
+
+        private int epochDay(String date) {
+            Integer day = dateDays.get(date);
+            if (day == null) {
+                day = (int) LocalDate.parse(date).toEpochDay();
+                dateDays.put(date, day);
+                dateText.putIfAbsent(day, date);
+            }
+            return day;
+        }
+
+        private static short smallId(StringDictionary dictionary, String value) {
+            int id = dictionary.id(value);
+            if (id > Short.MAX_VALUE) throw new IllegalStateException("more than " + Short.MAX_VALUE + " distinct values: " + value);
+            return (short) id;
+        }
+
+        private void grow() {
+            int capacity = code.length * 2;
+            code = Arrays.copyOf(code, capacity);
+            name = Arrays.copyOf(name, capacity);
+            epochDay = Arrays.copyOf(epochDay, capacity);
+            showtime = Arrays.copyOf(showtime, capacity);
+            language = Arrays.copyOf(language, capacity);
+            genre = Arrays.copyOf(genre, capacity);
+            totalSeats = Arrays.copyOf(totalSeats, capacity);
+            availableSeats = Arrays.copyOf(availableSeats, capacity);
+            priceCents = Arrays.copyOf(priceCents, capacity);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package kemora;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+
+/** Plain SMTP over one connection, enough to hand bills to a relay: EHLO, then MAIL / RCPT / DATA per message, RSET after a refusal */
+/** no TLS or AUTH, it is meant for a relay on the local network that takes care of both */
+class SmtpClient {
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final Socket socket;
+    private final BufferedInputStream in;
+    private final BufferedOutputStream out;
+    private final StringBuilder reply = new StringBuilder();
+
+    SmtpClient(String host, int port, int timeoutMillis) throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = new BufferedOutputStream(socket.getOutputStream());
+            if (readReply() != 220) throw new IOException("no greeting: " + lastReply());
+            if (command("EHLO kemora") != 250 && command("HELO kemora") != 250) throw new IOException("not accepted: " + lastReply());
+        }
+        catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /** Sends one message and returns the server's final reply code, 250 when it took the message */
+    int send(String from, String to, byte[] message) throws IOException {
+        int code = command("MAIL FROM:<" + from + ">");
+        if (code / 100 == 2) code = command("RCPT TO:<" + to + ">");
+        if (code / 100 == 2) {
+            code = command("DATA");
+            if (code == 354) {
+                out.write(message);
+                out.write(".\r\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                code = readReply();
+            }
+        }
+        if (code / 100 != 2 && code != 421) {
+            String refusal = lastReply();
+            try {
+                command("RSET");
+            }
+            catch (IOException e) {
+                // the answer to this message stands, the next one finds the connection broken
+            }
+            reply.setLength(0);
+            reply.append(refusal);
+        }
+        return code;
+    }
+
+    /** The text of the last reply, for error messages */
+    String lastReply() {
+        return reply.toString();
+    }
+
+    /** Says QUIT when asked to and the connection still works, then closes it */
+    void close(boolean quit) {
+        try (socket) {
+            if (quit) command("QUIT");
+        }
+        catch (IOException e) {
+            // the server may already have hung up, the message was accepted or not before this point
+        }
+    }
+
+    private int command(String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+        out.flush();
+        return readReply();
+    }
+
+    /** Reads a reply, following "250-" continuation lines to the last one, and returns its code */
+    private int readReply() throws IOException {
+        reply.setLength(0);
+        while (true) {
+            int start = reply.length();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) throw new EOFException("connection closed by the mail server");
+                if (b != '\r') reply.append((char) b);
+            }
+            if (reply.length() - start < 3) throw new IOException("malformed reply: " + reply);
+            boolean last = reply.length() - start == 3 || reply.charAt(start + 3) != '-';
+            if (last) {
+                try {
+                    return Integer.parseInt(reply, start, start + 3, 10);
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException("malformed reply: " + reply);
+                }
+            }
+            reply.append(' ');
+        }
+    }
+
+    /** The bill as a MIME message: a short text part with the booking and the PDF attached, both base64 so no line needs dot-stuffing */
+    static byte[] message(String from, String to, long bookingId, String summary, Path pdf) throws IOException {
+        byte[] attachment = Files.readAllBytes(pdf);
+        String boundary = "kemora-bill-" + bookingId;
+        Base64.Encoder lines = Base64.getMimeEncoder();
+        StringBuilder text = new StringBuilder(attachment.length * 4 / 3 + 1024);
+        text.append("From: KeMora <").append(from).append(">\r\n");
+        text.append("To: <").append(to).append(">\r\n");
+        text.append("Subject: Your KeMora ticket bill ").append(bookingId).append("\r\n");
+        text.append("Date: ").append(DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now())).append("\r\n");
+        // one id per bill, so a resend after a lost reply can be recognised as the same message
+        text.append("Message-ID: <bill-").append(bookingId).append('.').append(from.substring(from.indexOf('@') + 1)).append(">\r\n");
+        text.append("MIME-Version: 1.0\r\n");
+        text.append("Content-Type: multipart/mixed; boundary=\"").append(boundary).append("\"\r\n\r\n");
+        text.append("--").append(boundary).append("\r\n");
+        text.append("Content-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: base64\r\n\r\n");
+        text.append(lines.encodeToString(("Thank you for booking with KeMora.\r\n\r\n" + summary + "\r\n\r\nYour bill is attached.\r\n")
+                .getBytes(StandardCharsets.UTF_8))).append("\r\n");
+        text.append("--").append(boundary).append("\r\n");
+        String name = pdf.getFileName().toString();
+        text.append("Content-Type: application/pdf; name=\"").append(name).append("\"\r\n");
+        text.append("Content-Disposition: attachment; filename=\"").append(name).append("\"\r\n");
+        text.append("Content-Transfer-Encoding: base64\r\n\r\n");
+        text.append(lines.encodeToString(attachment)).append("\r\n");
+        text.append("--").append(boundary).append("--\r\n");
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
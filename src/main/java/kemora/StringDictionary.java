@@ -0,0 +1,33 @@
+package kemora;
+
+import java.util.*;
+
+/** Maps each distinct string to a dense int id and back */
+class StringDictionary {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] values = new String[16];
+    private int size;
+
+    int id(String value) {
+        Integer id = ids.get(value);
+        if (id != null) return id;
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        values[size] = value;
+        ids.put(value, size);
+        return size++;
+    }
+
+    /** Id of the value, or -1 when it never occurs */
+    int find(String value) {
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    String value(int id) {
+        return values[id];
+    }
+
+    int size() {
+        return size;
+    }
+}
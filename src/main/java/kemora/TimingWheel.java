@@ -0,0 +1,121 @@
+package kemora;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/** Hierarchical timing wheel: four wheels of 64 slots, each slot of a wheel spans the whole wheel below it */
+/** timers are linked into their slot, so scheduling is O(1) and a tick only touches the timers that are due */
+/** one daemon thread owns the wheels, other threads hand new timers over through a lock-free queue */
+class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    /** Something that should happen at a deadline unless it was settled first, it is linked straight into its slot */
+    abstract static class Timer {
+        long deadlineTick;
+        Timer next;
+
+        /** Called once on the wheel thread when the deadline passes */
+        abstract void expire();
+    }
+
+    private final long tickNanos;
+    private final long startNanos = System.nanoTime();
+    private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+    private final ConcurrentLinkedQueue<Timer> incoming = new ConcurrentLinkedQueue<>();
+    private final Thread ticker;
+    private volatile boolean running = true;
+    private long currentTick;
+
+    TimingWheel(long tick, TimeUnit unit, String name) {
+        this.tickNanos = unit.toNanos(tick);
+        this.ticker = new Thread(this::tickLoop, name);
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /** Runs timer.expire() after the delay, rounded up to whole ticks */
+    void schedule(Timer timer, long delay, TimeUnit unit) {
+        long elapsed = System.nanoTime() - startNanos + unit.toNanos(delay);
+        timer.deadlineTick = (elapsed + tickNanos - 1) / tickNanos;
+        incoming.add(timer);
+    }
+
+    void stop() {
+        running = false;
+        ticker.interrupt();
+    }
+
+    private void tickLoop() {
+        while (running) {
+            long now = (System.nanoTime() - startNanos) / tickNanos;
+            // catch up tick by tick if the thread was descheduled for a while
+            while (currentTick < now) {
+                place();
+                advance();
+            }
+            place();
+            try {
+                TimeUnit.NANOSECONDS.sleep((currentTick + 1) * tickNanos - (System.nanoTime() - startNanos));
+            }
+            catch (InterruptedException e) {
+                if (!running) return;
+            }
+        }
+    }
+
+    /** Moves the timers handed over by other threads into their slots */
+    private void place() {
+        Timer timer;
+        while ((timer = incoming.poll()) != null) {
+            insert(timer);
+        }
+    }
+
+    private void insert(Timer timer) {
+        long delay = timer.deadlineTick - currentTick;
+        if (delay <= 0) {
+            timer.expire();
+            return;
+        }
+        // further out than the top wheel reaches, park it in the last slot and look again when it comes round
+        long deadline = delay > MAX_DELAY ? currentTick + MAX_DELAY : timer.deadlineTick;
+        int level = 0;
+        while (level < LEVELS - 1 && deadline - currentTick >= 1L << (SLOT_BITS * (level + 1))) level++;
+        int slot = (int) (deadline >>> (SLOT_BITS * level)) & (SLOTS - 1);
+        timer.next = slots[level][slot];
+        slots[level][slot] = timer;
+    }
+
+    private void advance() {
+        currentTick++;
+        // when a wheel comes back to slot 0, the next slot of the wheel above is spread out into the lower wheels
+        for (int level = 1; level < LEVELS && (currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0; level++) {
+            int slot = (int) (currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1);
+            Timer timer = slots[level][slot];
+            slots[level][slot] = null;
+            while (timer != null) {
+                Timer next = timer.next;
+                timer.next = null;
+                insert(timer);
+                timer = next;
+            }
+        }
+        int slot = (int) currentTick & (SLOTS - 1);
+        Timer timer = slots[0][slot];
+        slots[0][slot] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            timer.next = null;
+            if (timer.deadlineTick <= currentTick) {
+                timer.expire();
+            }
+            else {
+                insert(timer);
+            }
+            timer = next;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package kemora;
+
+/** Outcome of checking one piece of cashier input: the accepted value, or the message to show instead */
+/** bad input is an ordinary answer here, not an exception, so typos and sold-out attempts cost no stack trace */
+final class ValidationResult<T> {
+    static final ValidationResult<Object> UNKNOWN_CODE = failure("Movie code cannot be found! plz enter a new code.");
+    static final ValidationResult<Object> BAD_SHOWTIME = failure("Invalid selection! Please choose a valid showtime.");
+    static final ValidationResult<Object> NOT_A_NUMBER = failure("Invalid number! Please enter a positive integer.");
+    static final ValidationResult<Object> NOT_POSITIVE = failure("Ticket quantity must be a positive integer.");
+    static final ValidationResult<Object> OVERBOOKED = failure("Not enough seats available! Try booking fewer tickets.");
+    static final ValidationResult<Object> BAD_EMAIL = failure("Invalid email! Please enter an address like name@example.com.");
+    static final long NOT_A_NUMBER_VALUE = Long.MIN_VALUE;
+
+    private final T value;
+    private final String error;
+
+    private ValidationResult(T value, String error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    static <T> ValidationResult<T> ok(T value) {
+        return new ValidationResult<>(value, null);
+    }
+
+    private static ValidationResult<Object> failure(String error) {
+        return new ValidationResult<>(null, error);
+    }
+
+    /** The shared failures carry no value, so one instance can stand in for any T */
+    @SuppressWarnings("unchecked")
+    <U> ValidationResult<U> as() {
+        return (ValidationResult<U>) this;
+    }
+
+    boolean isValid() {
+        return error == null;
+    }
+
+    T value() {
+        return value;
+    }
+
+    String error() {
+        return error;
+    }
+
+    /** Parses a whole number in the range of Integer.parseInt without throwing, NOT_A_NUMBER_VALUE when the text is not one */
+    static long parseInt(String text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i = 1;
+        }
+        if (i == length) return NOT_A_NUMBER_VALUE;
+        long result = 0;
+        for (; i < length; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return NOT_A_NUMBER_VALUE;
+            result = result * 10 + digit;
+            // same range as Integer.parseInt, anything longer is not a number either
+            if (result > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) return NOT_A_NUMBER_VALUE;
+        }
+        return negative ? -result : result;
+    }
+}
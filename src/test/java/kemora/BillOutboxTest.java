@@ -0,0 +1,100 @@
+package kemora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/** Against a mail server that defers, refuses and hangs up on purpose, every bill is accepted or put in failed/, none is lost */
+class BillOutboxTest {
+    private static BillOutbox.Settings settings(Path dir, LocalSmtpServer server) {
+        BillOutbox.Settings settings = new BillOutbox.Settings();
+        settings.directory = dir.resolve("outbox");
+        settings.host = "127.0.0.1";
+        settings.port = server.port();
+        settings.workers = 4;
+        settings.perDomainPerSecond = 10_000;
+        settings.backoffMillis = 10;
+        settings.maxBackoffMillis = 100;
+        // deferrals are only ever retried here, so a bill in failed/ can only be one the server refused
+        settings.maxAttempts = 1000;
+        return settings;
+    }
+
+    private static Path samplePdf(Path dir) throws Exception {
+        Path pdf = dir.resolve("Ticket_Bill_sample.pdf");
+        Files.write(pdf, "%PDF-1.4\n%%EOF\n".getBytes(StandardCharsets.US_ASCII));
+        return pdf;
+    }
+
+    private static void addBills(BillOutbox outbox, Path pdf, int from, int to) throws Exception {
+        for (int i = from; i < to; i++) outbox.add(i + 1, "guest" + i + "@domain" + (i % 4) + ".test", pdf, "Sample Movie, seats A1");
+    }
+
+    private static void drain(BillOutbox outbox) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (outbox.pending() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        assertEquals(0, outbox.pending(), "bills still waiting after a minute");
+    }
+
+    private static long files(Path dir) throws Exception {
+        try (var entries = Files.list(dir)) {
+            return entries.filter(file -> file.getFileName().toString().endsWith(".mail")).count();
+        }
+    }
+
+    @Test
+    void deferredDroppedAndRefusedBillsAreAllAccountedFor() throws Exception {
+        Path dir = Files.createTempDirectory("outbox-test");
+        Path pdf = samplePdf(dir);
+        int bills = 300;
+        try (LocalSmtpServer server = new LocalSmtpServer(0, 0.3, 0.1, 0.1)) {
+            BillOutbox.Settings settings = settings(dir, server);
+            BillOutbox outbox = new BillOutbox(settings);
+            addBills(outbox, pdf, 0, bills);
+            drain(outbox);
+            outbox.shutdown(10, TimeUnit.SECONDS);
+
+            assertEquals(bills, outbox.sent() + outbox.failed());
+            assertTrue(server.deferred() > 0 && server.refused() > 0 && server.dropped() > 0, server.summary());
+            assertTrue(outbox.retried() >= server.deferred() + server.dropped(), outbox.metricsSummary() + " " + server.summary());
+            // a refused bill is never sent again, so each 550 is one bill in failed/ and nothing else is there
+            assertEquals(server.refused(), outbox.failed());
+            assertEquals(outbox.failed(), files(settings.directory.resolve("failed")));
+            assertEquals(0, files(settings.directory));
+            // at least once: a bill whose 250 was dropped may have reached the server before it was sent again
+            assertTrue(server.accepted() - server.duplicates() >= outbox.sent(), server.summary());
+        }
+    }
+
+    @Test
+    void reopenedOutboxSendsWhatTheLastOneLeft() throws Exception {
+        Path dir = Files.createTempDirectory("outbox-test");
+        Path pdf = samplePdf(dir);
+        int bills = 50;
+        BillOutbox.Settings settings;
+        try (LocalSmtpServer busy = new LocalSmtpServer(0, 1, 0, 0)) {
+            settings = settings(dir, busy);
+            BillOutbox outbox = new BillOutbox(settings);
+            addBills(outbox, pdf, 0, bills);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (busy.deferred() < bills && System.nanoTime() < deadline) Thread.sleep(10);
+            outbox.shutdown(10, TimeUnit.SECONDS);
+            assertEquals(0, outbox.sent());
+        }
+        assertEquals(bills, files(settings.directory));
+
+        try (LocalSmtpServer healthy = new LocalSmtpServer(0, 0, 0, 0)) {
+            settings.port = healthy.port();
+            BillOutbox reopened = new BillOutbox(settings);
+            assertEquals(bills, reopened.queued());
+            drain(reopened);
+            reopened.shutdown(10, TimeUnit.SECONDS);
+            assertEquals(bills, reopened.sent());
+            assertEquals(bills, healthy.accepted());
+            assertEquals(0, files(settings.directory));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package kemora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.PdfWriter;
+import com.itextpdf.text.pdf.parser.*;
+import com.itextpdf.text.pdf.parser.Vector;
+import org.junit.jupiter.api.Test;
+
+/** A stamped bill reads exactly like the one generatePDFBill lays out with iText: same lines, same places on the page */
+class BillTemplateRendererTest {
+    private static BillRequest bill() {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        store.row("M001", "Café (Director's \\ Cut)", "2025-04-01", "Evening", 200, 200, 1250, "English", "Drama");
+        return new BillRequest(42, new Movie(store.build(), 0), new int[] {8, 9, 10, 25}, 5000, "test@kemora.lk");
+    }
+
+    /** The bill generatePDFBill would write, made in memory */
+    private static byte[] plain(BillRequest bill) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document document = new Document();
+        PdfWriter.getInstance(document, out);
+        document.open();
+        document.add(new Paragraph("------  Movie Ticket Reservation Bill ------"));
+        document.add(new Paragraph("Movie : " + bill.movie.name()));
+        document.add(new Paragraph("Date : " + bill.movie.date()));
+        document.add(new Paragraph("Showtime : " + bill.movie.showtime()));
+        document.add(new Paragraph("Tickets : " + bill.tickets));
+        document.add(new Paragraph("Seats : " + SeatMap.labels(bill.seats)));
+        document.add(new Paragraph("Total Cost: " + Money.format(bill.totalCents)));
+        document.add(new Paragraph("\n******Thank you for booking with us (KeMora)!*****"));
+        document.close();
+        return out.toByteArray();
+    }
+
+    /** Each line of the page as where it starts and its text, pieces drawn one after another are joined */
+    /** a gap between pieces shows as a bar, so a value stamped in the wrong place cannot read like the plain bill */
+    private static Map<Float, String> layout(byte[] pdf) throws Exception {
+        Map<Float, StringBuilder> lines = new TreeMap<>(Comparator.reverseOrder());
+        Map<Float, Float> ends = new HashMap<>();
+        new PdfReaderContentParser(new PdfReader(pdf)).processContent(1, new RenderListener() {
+            @Override public void beginTextBlock() { }
+            @Override public void endTextBlock() { }
+            @Override public void renderImage(ImageRenderInfo image) { }
+            @Override
+            public void renderText(TextRenderInfo text) {
+                if (text.getText().isBlank()) return;
+                float x = text.getBaseline().getStartPoint().get(Vector.I1);
+                float y = text.getBaseline().getStartPoint().get(Vector.I2);
+                StringBuilder line = lines.get(y);
+                if (line == null) lines.put(y, new StringBuilder(String.format(Locale.ROOT, "%.1f ", x)).append(text.getText()));
+                else if (Math.abs(ends.get(y) - x) < 0.01f) line.append(text.getText());
+                else line.append(String.format(Locale.ROOT, " | %.1f ", x)).append(text.getText());
+                ends.put(y, text.getBaseline().getEndPoint().get(Vector.I1));
+            }
+        });
+        Map<Float, String> layout = new LinkedHashMap<>();
+        lines.forEach((y, line) -> layout.put(y, line.toString()));
+        return layout;
+    }
+
+    private static byte[] stamped(BillTemplateRenderer renderer, BillRequest bill) {
+        ByteArrayOutputStream buffer = renderer.renderToBuffer(bill);
+        return Arrays.copyOf(((BillTemplateRenderer.ReusableBuffer) buffer).array(), buffer.size());
+    }
+
+    @Test
+    void stampedBillMatchesThePlainOne() throws Exception {
+        BillRequest bill = bill();
+        Map<Float, String> plain = layout(plain(bill));
+        assertEquals(plain, layout(stamped(new BillTemplateRenderer(), bill)));
+        assertEquals("36.0 Seats : A9 A10 A11 B6", plain.get(698f));
+    }
+
+    @Test
+    void aReusedTemplateLeavesNothingOfTheLastBill() throws Exception {
+        BillTemplateRenderer renderer = new BillTemplateRenderer();
+        stamped(renderer, bill());
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        store.row("M002", "Up", "2025-04-02", "Morning", 200, 200, 850, "Tamil", "Drama");
+        BillRequest second = new BillRequest(43, new Movie(store.build(), 0), new int[] {0}, 850, "test@kemora.lk");
+        assertEquals(layout(plain(second)), layout(stamped(renderer, second)));
+    }
+}
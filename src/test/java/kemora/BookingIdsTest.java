@@ -0,0 +1,31 @@
+package kemora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.*;
+import org.junit.jupiter.api.Test;
+
+/** Booking ids keep growing across restarts, so a bill or outbox entry is never named like an earlier one */
+class BookingIdsTest {
+    @Test
+    void idsDoNotRepeatAfterRestart() throws Exception {
+        Path file = Files.createTempDirectory("booking-ids").resolve("booking-ids");
+        BookingIds first = new BookingIds(file);
+        long last = 0;
+        // past the end of a block, then "crash" without any clean close
+        for (int i = 0; i < 1500; i++) {
+            long id = first.next();
+            assertTrue(id > last, "id " + id + " after " + last);
+            last = id;
+        }
+        BookingIds second = new BookingIds(file);
+        assertTrue(second.next() > last, "an id came back after the restart");
+    }
+
+    @Test
+    void unreadableFileIsAnError() throws Exception {
+        Path file = Files.createTempDirectory("booking-ids").resolve("booking-ids");
+        Files.writeString(file, "not a number");
+        assertThrows(java.io.IOException.class, () -> new BookingIds(file));
+    }
+}
@@ -0,0 +1,147 @@
+package kemora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+/** Journaled bookings keep their seats: after a restart, a compaction or a reload into another hall no seat is sold twice */
+class BookingJournalTest {
+    private static final int HALL = 100;
+
+    private static ShowtimeCatalog schedule(int totalSeats, int availableSeats) {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        store.row("M001", "Replay Test", "2025-04-01", "Evening", totalSeats, availableSeats, 1250, "English", "Drama");
+        return ShowtimeCatalog.build(store.build());
+    }
+
+    private static Movie showtime(ShowtimeCatalog catalog) {
+        return catalog.find("M001", "2025-04-01", "Evening");
+    }
+
+    /** Books until the showtime is sold out and checks that no seat went to two bookings */
+    private static void sellOutWithoutRepeats(Movie movie, Set<Integer> alreadySold) {
+        Set<Integer> sold = new HashSet<>(alreadySold);
+        int[] seats;
+        while ((seats = ReservationEngine.tryReserve(movie, 1)) != null) {
+            assertTrue(sold.add(seats[0]), "seat " + SeatMap.label(seats[0]) + " was sold again");
+        }
+        assertEquals(0, movie.availableSeats());
+    }
+
+    private static Set<Integer> bookAndJournal(BookingJournal journal, Movie movie, int bookings) throws Exception {
+        Set<Integer> sold = new HashSet<>();
+        for (int i = 0; i < bookings; i++) {
+            int[] seats = ReservationEngine.reserve(movie, 4);
+            journal.append(movie, seats);
+            for (int seat : seats) sold.add(seat);
+        }
+        return sold;
+    }
+
+    @Test
+    void restartPutsBookingsBackOnTheirSeats() throws Exception {
+        Path dir = Files.createTempDirectory("journal-test");
+        ShowtimeCatalog before = schedule(HALL, HALL - 10);
+        Set<Integer> sold;
+        try (BookingJournal journal = BookingJournal.open(dir, before, Long.MAX_VALUE)) {
+            sold = bookAndJournal(journal, showtime(before), 5);
+        }
+        ShowtimeCatalog after = schedule(HALL, HALL - 10);
+        BookingJournal.open(dir, after, Long.MAX_VALUE).close();
+        Movie movie = showtime(after);
+        assertEquals(HALL - 10 - sold.size(), movie.availableSeats());
+        sellOutWithoutRepeats(movie, sold);
+    }
+
+    @Test
+    void segmentLongerThanOneReadIsReplayedToTheEnd() throws Exception {
+        Path dir = Files.createTempDirectory("journal-test");
+        int bookings = 40_000;
+        ShowtimeCatalog before = schedule(2 * bookings, 2 * bookings);
+        Movie movie = showtime(before);
+        try (BookingJournal journal = BookingJournal.open(dir, before, Long.MAX_VALUE)) {
+            List<CompletableFuture<Long>> written = new ArrayList<>();
+            for (int seat = 0; seat < bookings; seat++) written.add(journal.appendAsync(movie, new int[] {seat}));
+            for (CompletableFuture<Long> future : written) future.get();
+        }
+        Path segment;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "segment-*.log")) {
+            segment = files.iterator().next();
+        }
+        long intact = Files.size(segment);
+        assertTrue(intact > 1 << 20, "the segment should span several read blocks, it has " + intact + " bytes");
+        // half a record left by a crash, only that is cut
+        Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        ShowtimeCatalog after = schedule(2 * bookings, 2 * bookings);
+        BookingJournal.open(dir, after, Long.MAX_VALUE).close();
+        assertEquals(bookings, showtime(after).availableSeats());
+        assertEquals(intact, Files.size(segment));
+    }
+
+    @Test
+    void compactedJournalKeepsTheSeats() throws Exception {
+        Path dir = Files.createTempDirectory("journal-test");
+        ShowtimeCatalog before = schedule(HALL, HALL);
+        Set<Integer> sold;
+        // a roll after every few records, so the seats have to survive being folded into a snapshot
+        try (BookingJournal journal = BookingJournal.open(dir, before, 3)) {
+            sold = bookAndJournal(journal, showtime(before), 8);
+        }
+        ShowtimeCatalog after = schedule(HALL, HALL);
+        BookingJournal.open(dir, after, Long.MAX_VALUE).close();
+        sellOutWithoutRepeats(showtime(after), sold);
+    }
+
+    @Test
+    void reloadIntoBiggerHallKeepsTheSeats() throws Exception {
+        ShowtimeCatalog old = schedule(HALL, HALL - 10);
+        Movie movie = showtime(old);
+        Set<Integer> sold = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            for (int seat : ReservationEngine.reserve(movie, 4)) sold.add(seat);
+        }
+        ShowtimeCatalog next = schedule(HALL + 40, HALL + 30);
+        old.store().handOver(next.store(), ShowtimeReloader.forwardRows(old, next));
+        Movie moved = showtime(next);
+        assertEquals(HALL + 30 - sold.size(), moved.availableSeats());
+        sellOutWithoutRepeats(moved, sold);
+    }
+
+    @Test
+    void reloadGivingSeatsBackOnlyFreesUnbookedOnes() throws Exception {
+        ShowtimeCatalog old = schedule(HALL, HALL - 30);
+        Movie movie = showtime(old);
+        Set<Integer> sold = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            for (int seat : ReservationEngine.reserve(movie, 4)) sold.add(seat);
+        }
+        ShowtimeCatalog next = schedule(HALL, HALL - 10);
+        old.store().handOver(next.store(), ShowtimeReloader.forwardRows(old, next));
+        Movie moved = showtime(next);
+        assertEquals(HALL - 10 - sold.size(), moved.availableSeats());
+        sellOutWithoutRepeats(moved, sold);
+    }
+
+    @Test
+    void releaseAfterReloadIntoSmallerHallOnlyGivesBackSeatsItHas() throws Exception {
+        ShowtimeCatalog old = schedule(HALL, HALL);
+        Movie movie = showtime(old);
+        List<int[]> bookings = new ArrayList<>();
+        for (int i = 0; i < HALL / 4; i++) bookings.add(ReservationEngine.reserve(movie, 4));
+        ShowtimeCatalog next = schedule(HALL - 40, HALL - 40);
+        old.store().handOver(next.store(), ShowtimeReloader.forwardRows(old, next));
+        Movie moved = showtime(next);
+        SeatMap seatMap = next.store().seatMap(moved.row);
+        assertEquals(0, moved.availableSeats());
+        // bookings on seats the new hall dropped free nothing, the count never promises a seat the map cannot give
+        for (int[] seats : bookings) {
+            ReservationEngine.release(movie, seats);
+            assertEquals(seatMap.freeSeats(), moved.availableSeats(), "after releasing " + SeatMap.labels(seats));
+        }
+        assertEquals(HALL - 40, moved.availableSeats());
+        sellOutWithoutRepeats(moved, Set.of());
+    }
+}
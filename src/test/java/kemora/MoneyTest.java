@@ -0,0 +1,130 @@
+package kemora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import org.junit.jupiter.api.Test;
+
+/** Cents arithmetic gives the same answers as BigDecimal, and amounts survive being printed and read back */
+class MoneyTest {
+    private static final long[] DIVIDENDS = {0, 1, 5, 7, 10, 15, 25, 35, 99, 12_345, 318_750, Long.MAX_VALUE, Long.MIN_VALUE + 1};
+    private static final long[] DIVISORS = {1, 2, 3, 4, 7, 10, 100, 10_000};
+
+    private static long bytes(String text) {
+        byte[] buf = text.getBytes(StandardCharsets.US_ASCII);
+        return Money.parse(buf, 0, buf.length);
+    }
+
+    private static long rounded(BigDecimal amount) {
+        return amount.setScale(0, Money.ROUNDING).longValueExact();
+    }
+
+    @Test
+    void divideRoundsLikeBigDecimalInEveryMode() {
+        for (RoundingMode mode : RoundingMode.values()) {
+            for (long dividend : DIVIDENDS) {
+                for (long divisor : DIVISORS) {
+                    for (long sign : new long[] {1, -1}) {
+                        long signedDividend = dividend * sign;
+                        for (long signedDivisor : new long[] {divisor, -divisor}) {
+                            String what = signedDividend + " / " + signedDivisor + " " + mode;
+                            if (mode == RoundingMode.UNNECESSARY && signedDividend % signedDivisor != 0) {
+                                assertThrows(ArithmeticException.class, () -> Money.divide(signedDividend, signedDivisor, mode));
+                                continue;
+                            }
+                            long expected = BigDecimal.valueOf(signedDividend).divide(BigDecimal.valueOf(signedDivisor), 0, mode).longValueExact();
+                            assertEquals(expected, Money.divide(signedDividend, signedDivisor, mode), what);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void formattedAmountsParseBack() {
+        for (long cents : new long[] {0, 1, 9, 10, 99, 100, 1250, 3750, 100_000, 2_147_483_647L, 999_999_999_999_999_999L}) {
+            String text = Money.format(cents);
+            assertEquals(cents, Money.parse(text), text);
+            assertEquals(cents, bytes(text), text);
+        }
+        assertEquals("-12.05", Money.format(-1205));
+    }
+
+    @Test
+    void amountsAreReadToTheCent() {
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(1250, Money.parse(" 12.50 "));
+        assertEquals(50, bytes(".5"));
+        assertEquals(1200, bytes("12."));
+        // digits after the cents are rounded the configured way
+        for (String text : new String[] {"12.345", "12.355", "0.005", "0.0049", "7.999"}) {
+            long expected = rounded(new BigDecimal(text).movePointRight(2));
+            assertEquals(expected, Money.parse(text), text);
+            assertEquals(expected, bytes(text), text);
+        }
+    }
+
+    @Test
+    void notAnAmountIsRefused() {
+        for (String text : new String[] {"", ".", "1.2.3", "-1", "12a", "1,50", "1234567890123456789"}) {
+            assertEquals(-1, bytes(text), "'" + text + "'");
+            assertThrows(NumberFormatException.class, () -> Money.parse(text));
+        }
+    }
+
+    @Test
+    void wholeAmountsTooBigForCentsAreRefused() {
+        // eighteen digits fit a long but not once they are counted in cents
+        for (String text : new String[] {"999999999999999999", "99999999999999999", "99999999999999999.9", "92233720368547759"}) {
+            assertEquals(-1, bytes(text), text);
+            assertThrows(NumberFormatException.class, () -> Money.parse(text));
+        }
+        assertEquals(999_999_999_999_999_900L, bytes("9999999999999999"));
+    }
+
+    @Test
+    void csvRowWithAHugePriceIsRejectedNotThrown() throws Exception {
+        Path csv = Files.createTempFile("showtimes", ".csv");
+        Files.writeString(csv, "Movie Code,Movie Name,Date,Showtime,Total Seats,Available Seats,Ticket Price,Language,Genre\n"
+                + "M001,Too Dear,2025-04-01,Morning,100,90,999999999999999999,English,Drama\n"
+                + "M002,Fine,2025-04-01,Evening,100,90,12.50,English,Drama\n");
+        ShowtimeCsvParser parser = new ShowtimeCsvParser();
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        parser.parseFile(csv, store);
+        assertEquals(1, parser.rows());
+        assertEquals(1, parser.badRows());
+        assertTrue(parser.errors().get(0).startsWith("line 2: Ticket Price"), parser.errors().get(0));
+    }
+
+    @Test
+    void percentOfRoundsLikeBigDecimal() {
+        for (long cents : new long[] {1, 99, 1250, 3750, 12_345, 99_999}) {
+            for (long basisPoints : new long[] {0, 1, 50, 850, 1250, 3333, 10_000}) {
+                long expected = rounded(BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(basisPoints)).movePointLeft(4));
+                assertEquals(expected, Money.percentOf(cents, basisPoints), cents + " at " + basisPoints);
+            }
+        }
+    }
+
+    @Test
+    void totalTakesTheDiscountBeforeTheTax() {
+        for (long unit : new long[] {0, 1, 850, 1250, 1999}) {
+            for (int tickets = 1; tickets <= 6; tickets++) {
+                BigDecimal subtotal = BigDecimal.valueOf(unit * tickets);
+                long discounted = unit * tickets - rounded(subtotal.multiply(BigDecimal.valueOf(Money.DISCOUNT_BASIS_POINTS)).movePointLeft(4));
+                long taxed = discounted + rounded(BigDecimal.valueOf(discounted).multiply(BigDecimal.valueOf(Money.TAX_BASIS_POINTS)).movePointLeft(4));
+                assertEquals(taxed, Money.total(unit, tickets), unit + " x " + tickets);
+            }
+        }
+        // 3 x 12.50 less 10% is 33.75, and 8.5% of that is 2.86875 before rounding
+        long discounted = 3750 - Money.percentOf(3750, 1000);
+        assertEquals(3375, discounted);
+        assertEquals(rounded(new BigDecimal("286.875")), Money.percentOf(discounted, 850));
+        assertThrows(ArithmeticException.class, () -> Money.total(Long.MAX_VALUE / 2, 3));
+    }
+}
@@ -0,0 +1,147 @@
+package kemora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/** Many cashiers on one showtime: the seats sold never exceed the hall and the count always matches what was sold */
+class ReservationEngineTest {
+    private static final int THREADS = 8;
+    private static final int HALL = 500;
+
+    private static Movie oneShowtime(int totalSeats, int availableSeats) {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        store.row("M001", "Stress Test", "2025-04-01", "Evening", totalSeats, availableSeats, 1250, "English", "Drama");
+        return new Movie(store.build(), 0);
+    }
+
+    /** Runs the task on every thread at once and waits for all of them */
+    private static <T> List<T> race(Callable<T> task) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(threads.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) results.add(future.get(1, TimeUnit.MINUTES));
+            return results;
+        }
+        finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentBookingsNeverOversell() throws Exception {
+        Movie movie = oneShowtime(HALL, HALL);
+        List<List<int[]>> booked = race(() -> {
+            List<int[]> mine = new ArrayList<>();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            // keep asking until even a single seat is refused
+            while (true) {
+                int[] seats = ReservationEngine.tryReserve(movie, 1 + random.nextInt(4));
+                if (seats == null) seats = ReservationEngine.tryReserve(movie, 1);
+                if (seats == null) return mine;
+                mine.add(seats);
+            }
+        });
+        Set<Integer> seats = new HashSet<>();
+        int sold = 0;
+        for (List<int[]> thread : booked) {
+            for (int[] booking : thread) {
+                sold += booking.length;
+                for (int seat : booking) {
+                    assertTrue(seat >= 0 && seat < HALL, "seat " + seat + " is outside the hall");
+                    assertTrue(seats.add(seat), "seat " + seat + " was sold twice");
+                }
+            }
+        }
+        assertEquals(HALL, sold, "confirmed seats must fill the hall and not one more");
+        assertEquals(HALL - sold, movie.availableSeats(), "final count is total minus sold");
+        assertEquals(0, movie.store.seatMap(movie.row).freeSeats(), "the seat map should be full");
+    }
+
+    @Test
+    void exactSeatsWithoutLeftovers() throws Exception {
+        Movie movie = oneShowtime(HALL, HALL);
+        AtomicInteger refused = new AtomicInteger();
+        List<Integer> sold = race(() -> {
+            int mine = 0;
+            for (int i = 0; i < 200; i++) {
+                if (ReservationEngine.tryReserve(movie, 1) != null) mine++;
+                else refused.incrementAndGet();
+            }
+            return mine;
+        });
+        int total = sold.stream().mapToInt(Integer::intValue).sum();
+        assertEquals(HALL, total, "every seat sold exactly once");
+        assertEquals(THREADS * 200 - HALL, refused.get());
+        assertEquals(0, movie.availableSeats());
+    }
+
+    @Test
+    void reserveAndReleaseKeepTheCount() throws Exception {
+        Movie movie = oneShowtime(HALL, HALL - 100);
+        List<Integer> kept = race(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Deque<int[]> held = new ArrayDeque<>();
+            int seats = 0;
+            for (int i = 0; i < 20_000; i++) {
+                if (!held.isEmpty() && random.nextBoolean()) {
+                    int[] booking = held.poll();
+                    ReservationEngine.release(movie, booking);
+                    seats -= booking.length;
+                }
+                else {
+                    int[] booking = ReservationEngine.tryReserve(movie, 1 + random.nextInt(6));
+                    if (booking != null) {
+                        held.add(booking);
+                        seats += booking.length;
+                    }
+                }
+                assertTrue(movie.availableSeats() >= 0 && movie.availableSeats() <= HALL, "count left the hall: " + movie.availableSeats());
+            }
+            return seats;
+        });
+        int held = kept.stream().mapToInt(Integer::intValue).sum();
+        assertEquals(HALL - 100 - held, movie.availableSeats(), "final count is total minus sold");
+        assertEquals(movie.availableSeats(), movie.store.seatMap(movie.row).freeSeats(), "seat map matches the count");
+    }
+
+    @Test
+    void refusedBookingLeavesTheCountAlone() throws OverbookingException {
+        Movie movie = oneShowtime(10, 3);
+        assertNull(ReservationEngine.tryReserve(movie, 4));
+        assertEquals(3, movie.availableSeats());
+        assertThrows(OverbookingException.class, () -> ReservationEngine.reserve(movie, 4));
+        assertEquals(3, ReservationEngine.reserve(movie, 3).length);
+        assertEquals(0, movie.availableSeats());
+    }
+
+    @Test
+    void groupTotalThatOverflowsIsRefused() {
+        Movie movie = oneShowtime(HALL, HALL);
+        assertNull(ReservationEngine.tryReserveAll(movie, new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE, 2}));
+        assertEquals(HALL, movie.availableSeats());
+    }
+
+    @Test
+    void bookingTheSeatMapCannotHoldGivesEverythingBack() {
+        Movie movie = oneShowtime(SeatMap.SEATS_PER_ROW, SeatMap.SEATS_PER_ROW);
+        SeatMap seatMap = movie.store.seatMap(movie.row);
+        // seats taken off the map behind the count's back, as a bug would, leave it two seats short of what the count says
+        seatMap.claim(SeatMap.SEATS_PER_ROW - 2);
+        assertNull(ReservationEngine.tryReserve(movie, 4));
+        assertNull(ReservationEngine.tryReserveAll(movie, new int[] {1, 4}));
+        assertEquals(SeatMap.SEATS_PER_ROW, movie.availableSeats(), "the count was given back");
+        assertEquals(2, seatMap.freeSeats(), "the seats claimed before the failure were freed");
+    }
+}
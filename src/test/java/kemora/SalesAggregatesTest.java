@@ -0,0 +1,133 @@
+package kemora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.Test;
+
+/** The striped sales counters always add up to what a full scan of the seat counts says, under concurrent sales and a reload */
+class SalesAggregatesTest {
+    private static final int THREADS = 8;
+    private static final String[] LANGUAGES = {"English", "Sinhala", "Tamil"};
+    private static final String[] GENRES = {"Drama", "Action"};
+    private static final String[] SHOWTIMES = {"Morning", "Evening"};
+
+    /** Twelve movies over five days, the reload moves a few seats in and out of the CSV counts and enlarges some halls */
+    private static ShowtimeCatalog schedule(boolean reloaded) {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        for (int movie = 0; movie < 12; movie++) {
+            for (int day = 1; day <= 5; day++) {
+                for (String showtime : SHOWTIMES) {
+                    int total = reloaded && movie % 4 == 1 ? 240 : 200;
+                    int available = reloaded && movie % 3 == 0 ? 190 : 200 - movie;
+                    store.row(String.format("M%03d", movie), "Movie " + movie, "2025-04-0" + day, showtime, total, available,
+                            850 + 125L * movie, LANGUAGES[movie % 3], GENRES[movie % 2]);
+                }
+            }
+        }
+        return ShowtimeCatalog.build(store.build());
+    }
+
+    /** Seats sold and revenue per value, added up from every row's count */
+    private static Map<String, long[]> recompute(ShowtimeStore store, SalesAggregates.Dimension dimension) {
+        Map<String, long[]> figures = new HashMap<>();
+        for (int row = 0; row < store.size(); row++) {
+            String value;
+            switch (dimension) {
+                case MOVIE: value = store.code(row); break;
+                case DATE: value = store.date(row); break;
+                case LANGUAGE: value = store.language(row); break;
+                default: value = store.genre(row);
+            }
+            long sold = store.totalSeats(row) - store.availableSeats(row);
+            long[] sums = figures.computeIfAbsent(value, v -> new long[3]);
+            sums[0] += store.totalSeats(row);
+            sums[1] += sold;
+            sums[2] += sold * store.priceCents(row);
+        }
+        return figures;
+    }
+
+    private static void assertMatchesRecompute(ShowtimeStore store) {
+        SalesAggregates sales = store.sales();
+        long sold = 0;
+        long revenue = 0;
+        for (SalesAggregates.Dimension dimension : SalesAggregates.Dimension.values()) {
+            Map<String, long[]> expected = recompute(store, dimension);
+            List<SalesAggregates.Figures> all = sales.all(dimension);
+            assertEquals(expected.size(), all.size(), dimension + " values");
+            for (SalesAggregates.Figures figures : all) {
+                long[] sums = expected.get(figures.value);
+                assertNotNull(sums, dimension + " " + figures.value + " is not in the schedule");
+                assertEquals(sums[0], figures.totalSeats, dimension + " " + figures.value + " total seats");
+                assertEquals(sums[1], figures.seatsSold, dimension + " " + figures.value + " seats sold");
+                assertEquals(sums[2], figures.revenueCents, dimension + " " + figures.value + " revenue");
+            }
+        }
+        for (long[] sums : recompute(store, SalesAggregates.Dimension.LANGUAGE).values()) {
+            sold += sums[1];
+            revenue += sums[2];
+        }
+        assertEquals(sold, sales.overall().seatsSold, "overall seats sold");
+        assertEquals(revenue, sales.overall().revenueCents, "overall revenue");
+    }
+
+    /** Books and gives back at random until stopped, keeping some bookings at the end */
+    private static Callable<Void> cashier(List<Movie> movies, CountDownLatch started, long runNanos) {
+        return () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Map<Movie, Deque<int[]>> held = new HashMap<>();
+            started.countDown();
+            long stop = System.nanoTime() + runNanos;
+            while (System.nanoTime() < stop) {
+                Movie movie = movies.get(random.nextInt(movies.size()));
+                Deque<int[]> mine = held.computeIfAbsent(movie, m -> new ArrayDeque<>());
+                if (!mine.isEmpty() && random.nextInt(3) == 0) {
+                    ReservationEngine.release(movie, mine.poll());
+                }
+                else {
+                    int[] seats = ReservationEngine.tryReserve(movie, 1 + random.nextInt(4));
+                    if (seats != null) mine.add(seats);
+                }
+            }
+            return null;
+        };
+    }
+
+    private static void run(List<Movie> movies, Runnable midway) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch started = new CountDownLatch(THREADS);
+            List<Future<Void>> done = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) done.add(threads.submit(cashier(movies, started, TimeUnit.MILLISECONDS.toNanos(600))));
+            started.await();
+            Thread.sleep(200);
+            midway.run();
+            for (Future<Void> future : done) future.get(1, TimeUnit.MINUTES);
+        }
+        finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void countersMatchRecomputeAfterConcurrentSales() throws Exception {
+        ShowtimeCatalog catalog = schedule(false);
+        assertMatchesRecompute(catalog.store());
+        run(catalog.all(), () -> assertTrue(catalog.store().sales().overall().seatsSold >= catalog.store().sales().soldAtLoad()));
+        assertMatchesRecompute(catalog.store());
+    }
+
+    @Test
+    void countersMatchRecomputeAfterReloadDuringSales() throws Exception {
+        ShowtimeCatalog old = schedule(false);
+        ShowtimeCatalog next = schedule(true);
+        run(old.all(), () -> old.store().handOver(next.store(), ShowtimeReloader.forwardRows(old, next)));
+        assertMatchesRecompute(next.store());
+        // the seat maps went across too, the enlarged halls by seat number
+        for (Movie movie : next.all()) {
+            assertEquals(movie.availableSeats(), movie.store.seatMap(movie.row).freeSeats(), movie.code() + " " + movie.date() + " seat map");
+        }
+    }
+}
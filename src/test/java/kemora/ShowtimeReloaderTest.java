@@ -0,0 +1,62 @@
+package kemora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/** A reload never loses sales: a file that drops a showtime with seats sold since it was loaded is refused */
+class ShowtimeReloaderTest {
+    private static final String HEADER = "Movie Code,Movie Name,Date,Showtime,Total Seats,Available Seats,Ticket Price,Language,Genre\n";
+    private static final String FIRST = "M001,Sold Some,2025-04-01,Evening,100,90,12.50,English,Drama\n";
+    private static final String SECOND = "M002,Sold None,2025-04-01,Evening,100,90,12.50,English,Drama\n";
+
+    private static ShowtimeCatalog load(Path csv) throws Exception {
+        return ShowtimeCatalog.build(MovieTicketReservationGroup_KeMora.parseShowtimes(csv, new PrintStream(new ByteArrayOutputStream())));
+    }
+
+    @Test
+    void fileDroppingAShowtimeWithSalesIsRefused() throws Exception {
+        Path csv = Files.createTempDirectory("reload-test").resolve("showtimes.csv");
+        Files.writeString(csv, HEADER + FIRST + SECOND);
+        AtomicReference<ShowtimeCatalog> current = new AtomicReference<>(load(csv));
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        ShowtimeReloader reloader = new ShowtimeReloader(csv, current::get, current::set, new PrintStream(log), 0);
+        ShowtimeCatalog before = current.get();
+        Movie sold = before.find("M001", "2025-04-01", "Evening");
+        assertNotNull(ReservationEngine.reserve(sold, 4));
+
+        // a file caught half written has lost the row that sold
+        Files.writeString(csv, HEADER + SECOND);
+        assertFalse(reloader.reload());
+        assertSame(before, current.get());
+        assertTrue(log.toString().startsWith("Error reloading movies, keeping the current schedule"), log.toString());
+        // the held rows are back and selling
+        assertEquals(86, sold.availableSeats());
+        assertNotNull(ReservationEngine.reserve(sold, 1));
+        assertEquals(85, sold.availableSeats());
+
+        // once the file is whole again the sales carry over instead of the file's count coming back
+        Files.writeString(csv, HEADER + FIRST + SECOND);
+        assertTrue(reloader.reload());
+        assertEquals(85, current.get().find("M001", "2025-04-01", "Evening").availableSeats());
+        assertTrue(sold.store.isRetired(sold.row));
+    }
+
+    @Test
+    void fileDroppingAShowtimeWithoutSalesIsTaken() throws Exception {
+        Path csv = Files.createTempDirectory("reload-test").resolve("showtimes.csv");
+        Files.writeString(csv, HEADER + FIRST + SECOND);
+        AtomicReference<ShowtimeCatalog> current = new AtomicReference<>(load(csv));
+        ShowtimeReloader reloader = new ShowtimeReloader(csv, current::get, current::set, new PrintStream(new ByteArrayOutputStream()), 0);
+        assertNotNull(ReservationEngine.reserve(current.get().find("M001", "2025-04-01", "Evening"), 4));
+
+        Files.writeString(csv, HEADER + FIRST);
+        assertTrue(reloader.reload());
+        assertNull(current.get().find("M002", "2025-04-01", "Evening"));
+        assertEquals(86, current.get().find("M001", "2025-04-01", "Evening").availableSeats());
+    }
+}
@@ -0,0 +1,112 @@
+package kemora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Every page the search hands out, read one after another, is exactly what a scan of all rows finds, in date, price, row order */
+class ShowtimeSearchTest {
+    private static final String[] LANGUAGES = {"English", "english", "Sinhala", "Tamil"};
+    private static final String[] GENRES = {"Drama", "Comedy", "comedy", "Action", "Horror", "Animation"};
+    private static final long[] PRICES = {0, 850, 1250, 1250, 1999, Integer.MAX_VALUE, 5_000_000_000L, 900_000_000_000_000L};
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 4, 1);
+
+    private static ShowtimeStore schedule(Random random, int rows) {
+        ShowtimeStore.Builder store = new ShowtimeStore.Builder();
+        for (int i = 0; i < rows; i++) {
+            // languages and genres are skewed so some categories are a few rows and some are most of them
+            String language = LANGUAGES[Math.min(LANGUAGES.length - 1, (int) Math.abs(random.nextGaussian() * 1.5))];
+            String genre = GENRES[random.nextInt(i % 7 == 0 ? GENRES.length : 2)];
+            store.row("M" + i, "Film " + i, FIRST_DAY.plusDays(random.nextInt(9)).toString(), i % 2 == 0 ? "Evening" : "Morning",
+                    100, random.nextInt(101), PRICES[random.nextInt(PRICES.length)], language, genre);
+        }
+        return store.build();
+    }
+
+    private static ShowtimeQuery randomQuery(Random random) {
+        ShowtimeQuery query = new ShowtimeQuery();
+        if (random.nextInt(3) == 0) query.language(LANGUAGES[random.nextInt(LANGUAGES.length)]);
+        if (random.nextInt(3) == 0) query.genre(GENRES[random.nextInt(GENRES.length)]);
+        if (random.nextInt(2) == 0) {
+            // may reach outside the days the schedule has
+            int from = random.nextInt(12) - 2;
+            query.between(FIRST_DAY.plusDays(from).toString(), FIRST_DAY.plusDays(from + random.nextInt(4)).toString());
+        }
+        if (random.nextInt(3) == 0) query.priceFrom(PRICES[random.nextInt(PRICES.length)]);
+        if (random.nextInt(3) == 0) query.priceUnder(PRICES[random.nextInt(PRICES.length)] + random.nextInt(2));
+        if (random.nextInt(3) == 0) query.seatsLeft(random.nextInt(100));
+        return query;
+    }
+
+    /** The rows a query matches by looking at every one of them */
+    private static List<Integer> scan(ShowtimeStore store, ShowtimeQuery query) {
+        List<Integer> rows = new ArrayList<>();
+        for (int row = 0; row < store.size(); row++) {
+            if (query.language != null && !store.language(row).equalsIgnoreCase(query.language)) continue;
+            if (query.genre != null && !store.genre(row).equalsIgnoreCase(query.genre)) continue;
+            if (store.epochDay(row) < query.fromDay || store.epochDay(row) > query.toDay) continue;
+            if (store.priceCents(row) < query.minPriceCents || store.priceCents(row) > query.maxPriceCents) continue;
+            if (store.availableSeats(row) < query.minSeats) continue;
+            rows.add(row);
+        }
+        rows.sort(Comparator.<Integer>comparingInt(store::epochDay).thenComparingLong(store::priceCents).thenComparingInt(row -> row));
+        return rows;
+    }
+
+    /** Every page in turn, checking that none is longer than the limit and only the last one ends the results */
+    private static List<Integer> allPages(ShowtimeSearch search, ShowtimeQuery query, int limit) {
+        List<Integer> rows = new ArrayList<>();
+        int cursor = 0;
+        while (true) {
+            ShowtimeSearch.Page page = search.search(query, cursor, limit);
+            assertTrue(page.showtimes.size() <= limit);
+            for (Movie movie : page.showtimes) rows.add(movie.row);
+            if (page.next < 0) return rows;
+            assertEquals(limit, page.showtimes.size(), "a page before the last one came back short");
+            assertTrue(page.next > cursor, "the cursor did not move on");
+            cursor = page.next;
+        }
+    }
+
+    @Test
+    void pagesMatchAScanOfEveryRow() {
+        Random random = new Random(16);
+        ShowtimeStore store = schedule(random, 3000);
+        ShowtimeSearch search = ShowtimeCatalog.build(store).search();
+        for (int i = 0; i < 400; i++) {
+            ShowtimeQuery query = randomQuery(random);
+            List<Integer> expected = scan(store, query);
+            for (int limit : new int[] {1, 7, 20, 5000}) {
+                assertEquals(expected, allPages(search, query, limit), "query " + i + " in pages of " + limit);
+            }
+        }
+    }
+
+    @Test
+    void pricesAboveAnIntSortAfterCheaperOnes() {
+        ShowtimeStore.Builder builder = new ShowtimeStore.Builder();
+        builder.row("M001", "Dear", "2025-04-01", "Evening", 100, 90, 900_000_000_000_000L, "English", "Drama");
+        builder.row("M002", "Cheap", "2025-04-01", "Evening", 100, 90, 850, "English", "Drama");
+        builder.row("M003", "Dear Too", "2025-04-01", "Morning", 100, 90, 900_000_000_000_000L, "English", "Drama");
+        ShowtimeStore store = builder.build();
+        ShowtimeSearch search = ShowtimeCatalog.build(store).search();
+        assertEquals(List.of(1, 0, 2), allPages(search, new ShowtimeQuery(), 1));
+        assertEquals(List.of(0, 2), allPages(search, new ShowtimeQuery().priceFrom(Integer.MAX_VALUE), 20));
+    }
+
+    @Test
+    void limitBelowOneIsAFilterError() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String limit : new String[] {"limit=0", "limit=-5"}) {
+            out.reset();
+            MovieTicketReservationGroup_KeMora.searchShowtimes(new String[] {"--search", "genre=Drama", limit}, new PrintStream(out));
+            assertTrue(out.toString().startsWith("Error in search filters: limit must be at least 1"), out.toString());
+        }
+        ShowtimeSearch search = ShowtimeCatalog.build(schedule(new Random(1), 10)).search();
+        assertThrows(IllegalArgumentException.class, () -> search.search(new ShowtimeQuery(), 0, 0));
+    }
+}